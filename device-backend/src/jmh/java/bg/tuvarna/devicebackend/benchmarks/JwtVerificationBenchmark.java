@@ -0,0 +1,83 @@
+package bg.tuvarna.devicebackend.benchmarks;
+
+import bg.tuvarna.devicebackend.config.JwtKeySet;
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.config.VerifiedToken;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old JwtAuthenticationFilter path (a new parser and a full verification for isTokenExpired,
+ * extractId and twice more in isTokenValid) with a single {@link JwtService#verify(String)}, with and without
+ * the verified-token cache.
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtVerificationBenchmark {
+    private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private final JwtKeySet keySet = new JwtKeySet(new DefaultResourceLoader(), new ObjectMapper(), "", Duration.ofHours(2));
+    private final JwtService uncachedService = new JwtService(keySet, Duration.ofHours(2), 0);
+    private final JwtService cachedService = new JwtService(keySet, Duration.ofHours(2), 1024);
+    private String legacyToken;
+    private String uncachedToken;
+    private String cachedToken;
+
+    @Setup
+    public void setUp() {
+        User user = User.builder().id(42L).email("user@example.com").role(UserRole.USER).build();
+        legacyToken = Jwts.builder()
+                .setClaims(Map.of("role", "USER", "email", "user@example.com"))
+                .setSubject("42")
+                .setIssuedAt(new Date())
+                .setExpiration(Date.from(Instant.now().plusSeconds(2L * 60 * 60)))
+                .signWith(key)
+                .compact();
+        uncachedToken = uncachedService.generateToken(user);
+        cachedToken = cachedService.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean parsePerCall() {
+        if (parse(legacyToken).getExpiration() == null) {
+            return false;
+        }
+        long id = Long.parseLong(parse(legacyToken).getSubject());
+        return id == Long.parseLong(parse(legacyToken).getSubject()) && parse(legacyToken).getExpiration() != null;
+    }
+
+    @Benchmark
+    public VerifiedToken verifyOnce() {
+        return uncachedService.verify(uncachedToken);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyCached() {
+        return cachedService.verify(cachedToken);
+    }
+
+    private Claims parse(String token) {
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+}
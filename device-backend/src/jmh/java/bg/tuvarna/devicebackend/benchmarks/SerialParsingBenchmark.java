@@ -0,0 +1,48 @@
+package bg.tuvarna.devicebackend.benchmarks;
+
+import bg.tuvarna.devicebackend.utils.SerialNumberFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old split-based suffix parsing of findPassportBySerialId with {@link SerialNumberFormat}.
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerialParsingBenchmark {
+    private final String[] prefixes = {"AB", "ABC", "ABCD"};
+    private final String serialId = "ABC000123456";
+
+    @Benchmark
+    public long splitBased() {
+        long found = -1;
+        for (String prefix : prefixes) {
+            try {
+                found = Integer.parseInt(serialId.split(prefix)[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                continue;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public long serialNumberFormat() {
+        long found = -1;
+        for (String prefix : prefixes) {
+            long serialNumber = SerialNumberFormat.parse(serialId, prefix);
+            if (serialNumber != SerialNumberFormat.INVALID) {
+                found = serialNumber;
+            }
+        }
+        return found;
+    }
+}
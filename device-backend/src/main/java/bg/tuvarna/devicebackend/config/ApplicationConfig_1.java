@@ -3,11 +3,11 @@ package bg.tuvarna.devicebackend.config;
 import lombok.AllArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Collections;
@@ -16,12 +16,14 @@ import java.util.Collections;
 @AllArgsConstructor
 public class ApplicationConfig {
     private final UserDetailsServiceConfig userDetailsService;
+    private final Environment environment;
 
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -36,6 +38,9 @@ public class ApplicationConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+        return new BoundedPasswordEncoder(
+                environment.getProperty("security.password.bcrypt-cost", Integer.class, 10),
+                environment.getProperty("security.password.queue-capacity", Integer.class, 64)
+        );
     }
 }
\ No newline at end of file
@@ -3,19 +3,22 @@ package bg.tuvarna.devicebackend.config;
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorResponse;
+import bg.tuvarna.devicebackend.controllers.execptions.ServiceBusyException;
 import bg.tuvarna.devicebackend.models.dtos.AuthResponseDTO;
-import bg.tuvarna.devicebackend.models.dtos.UserLoginDTO;
 import bg.tuvarna.devicebackend.models.dtos.UserVO;
 import bg.tuvarna.devicebackend.models.entities.User;
-import bg.tuvarna.devicebackend.services.UserService;
+import bg.tuvarna.devicebackend.services.DeviceService;
+import bg.tuvarna.devicebackend.services.RefreshTokenService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationServiceException;
@@ -25,7 +28,6 @@ import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.AuthenticationConverter;
 import org.springframework.security.web.authentication.AuthenticationFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
 
 import java.io.IOException;
 
@@ -33,15 +35,16 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class AuthFilter {
     private final AuthenticationManager manager;
-    private final UserService userService;
     private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
+    private final DeviceService deviceService;
     @Autowired
     private ObjectMapper objectMapper;
 
     @Bean(name = "CustomAuthFilter")
     public AuthenticationFilter authFilter() {
         AuthenticationConverter authenticationConverter = this::authConverter;
-        AuthenticationFilter filter = new AuthenticationFilter(manager, authenticationConverter);
+        AuthenticationFilter filter = new AuthenticationFilter(this::authenticate, authenticationConverter);
         filter.setRequestMatcher(AuthFilter::matches);
         filter.setSuccessHandler(this::successHandler);
         filter.setFailureHandler(this::failureHandler);
@@ -50,10 +53,12 @@ public class AuthFilter {
 
     private void successHandler(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, Authentication authentication) {
         if (authentication.isAuthenticated()) {
+            // the principal was loaded with its devices by the authentication provider, so it is reused as is
             User principal = (User) authentication.getPrincipal();
-            String token = jwtService.generateToken(userService.getUserById(principal.getId()));
-            UserVO userVO = new UserVO(principal);
-            AuthResponseDTO responseDTO = new AuthResponseDTO(token, userVO);
+            String token = jwtService.generateToken(principal);
+            UserVO userVO = deviceService.withRenovations(new UserVO(principal));
+            String refreshToken = refreshTokenService.issue(principal.getId());
+            AuthResponseDTO responseDTO = new AuthResponseDTO(token, userVO, refreshToken);
             httpServletResponse.setStatus(HttpServletResponse.SC_OK);
             httpServletResponse.setContentType("application/json");
             try {
@@ -65,9 +70,26 @@ public class AuthFilter {
         }
     }
 
+    // the filter only handles AuthenticationException, so a full hashing queue is passed through as one
+    private Authentication authenticate(Authentication authentication) {
+        try {
+            return manager.authenticate(authentication);
+        } catch (ServiceBusyException e) {
+            throw new AuthenticationServiceException(e.getMessage(), e);
+        }
+    }
+
     private void failureHandler(HttpServletRequest request,
                                 HttpServletResponse response,
                                 AuthenticationException e) throws IOException {
+        if (e.getCause() instanceof ServiceBusyException busy) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType("application/json");
+            objectMapper.writeValue(response.getWriter(), new ErrorResponse(busy.getMessage(), ErrorCode.Busy));
+            return;
+        }
+
         response.setStatus(HttpStatus.UNAUTHORIZED.value());
         response.setContentType("application/json");
 
@@ -82,15 +104,35 @@ public class AuthFilter {
         return httpServletRequest.getMethod().equals("POST") && httpServletRequest.getRequestURI().equals("/api/v1/users/login");
     }
 
+    /**
+     * Reads username and password from the body with a streaming parser. The user is not looked up here,
+     * the authentication provider loads it once by email or phone.
+     */
     private Authentication authConverter(HttpServletRequest request) {
-        try {
-            ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
-            Gson gson = new Gson();
-            UserLoginDTO userLoginDTO = gson.fromJson(requestWrapper.getReader(), UserLoginDTO.class);
-            User user = userService.getUserByUsername(userLoginDTO.getUsername());
-            return new UsernamePasswordAuthenticationToken(user.getId(), userLoginDTO.getPassword());
-        } catch (IOException | CustomException e) {
+        String username = null;
+        String password = null;
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new AuthenticationServiceException("Wrong credentials!");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("username".equals(field) && value == JsonToken.VALUE_STRING) {
+                    username = parser.getText();
+                } else if ("password".equals(field) && value == JsonToken.VALUE_STRING) {
+                    password = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new AuthenticationServiceException("Wrong credentials!");
+        }
+
+        if (username == null || password == null) {
             throw new AuthenticationServiceException("Wrong credentials!");
         }
+        return UsernamePasswordAuthenticationToken.unauthenticated(username, password);
     }
 }
\ No newline at end of file
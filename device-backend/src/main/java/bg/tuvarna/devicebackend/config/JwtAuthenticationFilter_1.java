@@ -10,16 +10,31 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    private static final RequestMatcher PUBLIC_ROUTES = new OrRequestMatcher(Arrays.stream(SecurityConfig.PUBLIC_PATHS)
+            .map(path -> (RequestMatcher) new AntPathRequestMatcher(path))
+            .toList());
+
     private final JwtService jwtService;
     private final UserDetailsServiceConfig userDetailsService;
+    private final PrincipalCache principalCache;
+
+    // permitAll routes don't need an identity, so they skip token parsing entirely
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return PUBLIC_ROUTES.matches(request);
+    }
 
     @Override
     protected void doFilterInternal(
@@ -29,7 +44,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     ) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String id;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
@@ -38,16 +52,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwt = authHeader.substring(7);
         try {
-            if (!jwtService.isTokenExpired(jwt)) {
-                id = jwtService.extractId(jwt);
-
-                if (id != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    User user = userDetailsService.loadUserByUsername(id);
-                    if (jwtService.isTokenValid(jwt, user)) {
-                        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
-                    }
+            VerifiedToken token = jwtService.verify(jwt);
+            if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                String id = token.userId().toString();
+                User user = principalCache.isEnabled()
+                        ? principalCache.get(token.userId(), () -> userDetailsService.loadUserById(id))
+                        : token.toPrincipal();
+                if (user == null) {
+                    user = userDetailsService.loadUserById(id);
+                }
+                if (token.userId().equals(user.getId())) {
+                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
                 }
             }
             filterChain.doFilter(request, response);
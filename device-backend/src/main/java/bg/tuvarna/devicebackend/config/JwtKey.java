@@ -0,0 +1,15 @@
+package bg.tuvarna.devicebackend.config;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+
+import java.security.Key;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One entry of the {@link JwtKeySet}. signingKey is null on nodes that only verify, and publicJwk is null
+ * for shared HMAC secrets, which are never published.
+ */
+public record JwtKey(String kid, SignatureAlgorithm algorithm, Key verificationKey, Key signingKey,
+                     Instant notBefore, Map<String, Object> publicJwk) {
+}
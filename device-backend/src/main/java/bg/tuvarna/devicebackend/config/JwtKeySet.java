@@ -0,0 +1,266 @@
+package bg.tuvarna.devicebackend.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPrivateKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keys used to sign and verify access tokens, read from a JWK set (security.jwt.key-set.location) that
+ * can be a file or the /.well-known/jwks.json endpoint of another node. Signing nodes load a set that
+ * holds the private parts ("d" for RSA/EC, "k" for HMAC). Verify-only nodes can point at the public set.
+ * <p>
+ * Rotation follows the "nbf" (epoch seconds) of each key. The active signing key is the newest one whose
+ * nbf has passed, so a key can be published ahead of time and every node switches to it at the same moment.
+ * An older key still verifies tokens until its successor has been active for one access token lifetime,
+ * so every token it signed has expired by the time it is retired.
+ * <p>
+ * Without a location a random HMAC key is generated, so tokens are only valid on this node until it restarts.
+ */
+@Component
+public class JwtKeySet {
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeySet.class);
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(30);
+    private static final Map<String, String> CURVES = Map.of("P-256", "secp256r1", "P-384", "secp384r1", "P-521", "secp521r1");
+    private static final Map<String, SignatureAlgorithm> CURVE_ALGORITHMS = Map.of(
+            "P-256", SignatureAlgorithm.ES256, "P-384", SignatureAlgorithm.ES384, "P-521", SignatureAlgorithm.ES512);
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final String location;
+    private final Duration accessTokenTtl;
+    private volatile List<JwtKey> keys;
+    private final AtomicReference<Instant> lastReload = new AtomicReference<>(Instant.EPOCH);
+
+    public JwtKeySet(ResourceLoader resourceLoader, ObjectMapper objectMapper,
+                     @Value("${security.jwt.key-set.location:}") String location,
+                     @Value("${security.jwt.access-token-ttl:PT2H}") Duration accessTokenTtl) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.location = location;
+        this.accessTokenTtl = accessTokenTtl;
+
+        if (location.isBlank()) {
+            logger.warn("No JWT key set configured, tokens are signed with a generated key and are only valid on this node");
+            SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+            keys = List.of(new JwtKey("local", SignatureAlgorithm.HS256, key, key, Instant.EPOCH, null));
+        } else {
+            keys = load();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.key-set.refresh-interval:PT5M}")
+    public void refresh() {
+        if (location.isBlank()) {
+            return;
+        }
+
+        lastReload.set(Instant.now());
+        reload();
+    }
+
+    public JwtKey signingKey() {
+        Instant now = Instant.now();
+        JwtKey current = null;
+        for (JwtKey key : keys) {
+            if (key.signingKey() != null && !key.notBefore().isAfter(now)) {
+                current = key;
+            }
+        }
+        if (current == null) {
+            throw new IllegalStateException("No active signing key in the JWT key set");
+        }
+        return current;
+    }
+
+    /**
+     * Returns the key that verifies a token with the given kid and alg header, or null when the key is
+     * unknown, retired or registered for another algorithm. An unknown kid triggers a reload, rate limited,
+     * so keys published after the last scheduled refresh are picked up.
+     */
+    public Key verificationKey(String kid, String algorithm) {
+        if (kid == null) {
+            return null;
+        }
+
+        JwtKey key = find(kid);
+        if (key == null && reloadAllowed()) {
+            reload();
+            key = find(kid);
+        }
+        if (key == null || !key.algorithm().getValue().equals(algorithm) || isRetired(key, Instant.now())) {
+            return null;
+        }
+        return key.verificationKey();
+    }
+
+    public Map<String, Object> publicKeySet() {
+        Instant now = Instant.now();
+        return Map.of("keys", keys.stream()
+                .filter(key -> key.publicJwk() != null && !isRetired(key, now))
+                .map(JwtKey::publicJwk)
+                .toList());
+    }
+
+    private JwtKey find(String kid) {
+        for (JwtKey key : keys) {
+            if (key.kid().equals(kid)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    private boolean isRetired(JwtKey key, Instant now) {
+        for (JwtKey other : keys) {
+            if (other.notBefore().isAfter(key.notBefore())) {
+                return now.isAfter(other.notBefore().plus(accessTokenTtl));
+            }
+        }
+        return false;
+    }
+
+    // claims the reload slot atomically, so a burst of unknown kids triggers one reload instead of one per thread
+    private boolean reloadAllowed() {
+        if (location.isBlank()) {
+            return false;
+        }
+        Instant now = Instant.now();
+        Instant last = lastReload.get();
+        return now.isAfter(last.plus(MIN_RELOAD_INTERVAL)) && lastReload.compareAndSet(last, now);
+    }
+
+    private void reload() {
+        try {
+            keys = load();
+        } catch (RuntimeException e) {
+            logger.error("Failed to reload JWT key set from {}, keeping the previous keys", location, e);
+        }
+    }
+
+    private List<JwtKey> load() {
+        JsonNode root;
+        try (InputStream inputStream = resourceLoader.getResource(location).getInputStream()) {
+            root = objectMapper.readTree(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read JWT key set from " + location, e);
+        }
+
+        List<JwtKey> loaded = new ArrayList<>();
+        for (JsonNode jwk : root.path("keys")) {
+            try {
+                loaded.add(parse(jwk));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new IllegalStateException("Invalid key " + jwk.path("kid").asText() + " in " + location, e);
+            }
+        }
+        if (loaded.isEmpty()) {
+            throw new IllegalStateException("JWT key set " + location + " has no keys");
+        }
+
+        loaded.sort(Comparator.comparing(JwtKey::notBefore));
+        logger.info("Loaded {} JWT keys from {}", loaded.size(), location);
+        return List.copyOf(loaded);
+    }
+
+    private static JwtKey parse(JsonNode jwk) throws GeneralSecurityException {
+        String kid = text(jwk, "kid");
+        Instant notBefore = jwk.has("nbf") ? Instant.ofEpochSecond(jwk.get("nbf").asLong()) : Instant.EPOCH;
+
+        switch (text(jwk, "kty")) {
+            case "oct" -> {
+                SignatureAlgorithm algorithm = SignatureAlgorithm.forName(jwk.path("alg").asText("HS256"));
+                SecretKey secret = Keys.hmacShaKeyFor(bytes(jwk, "k"));
+                return new JwtKey(kid, algorithm, secret, secret, notBefore, null);
+            }
+            case "RSA" -> {
+                SignatureAlgorithm algorithm = SignatureAlgorithm.forName(jwk.path("alg").asText("RS256"));
+                KeyFactory factory = KeyFactory.getInstance("RSA");
+                BigInteger modulus = integer(jwk, "n");
+                PublicKey publicKey = factory.generatePublic(new RSAPublicKeySpec(modulus, integer(jwk, "e")));
+                PrivateKey privateKey = jwk.has("d") ? factory.generatePrivate(new RSAPrivateKeySpec(modulus, integer(jwk, "d"))) : null;
+                return new JwtKey(kid, algorithm, publicKey, privateKey, notBefore, publicJwk(jwk, algorithm, "n", "e"));
+            }
+            case "EC" -> {
+                String curve = text(jwk, "crv");
+                if (!CURVES.containsKey(curve)) {
+                    throw new IllegalArgumentException("Unsupported curve " + curve);
+                }
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(CURVES.get(curve)));
+                ECParameterSpec spec = parameters.getParameterSpec(ECParameterSpec.class);
+
+                KeyFactory factory = KeyFactory.getInstance("EC");
+                PublicKey publicKey = factory.generatePublic(new ECPublicKeySpec(new ECPoint(integer(jwk, "x"), integer(jwk, "y")), spec));
+                PrivateKey privateKey = jwk.has("d") ? factory.generatePrivate(new ECPrivateKeySpec(integer(jwk, "d"), spec)) : null;
+                SignatureAlgorithm algorithm = CURVE_ALGORITHMS.get(curve);
+                return new JwtKey(kid, algorithm, publicKey, privateKey, notBefore, publicJwk(jwk, algorithm, "crv", "x", "y"));
+            }
+            default -> throw new IllegalArgumentException("Unsupported key type " + jwk.path("kty").asText());
+        }
+    }
+
+    private static Map<String, Object> publicJwk(JsonNode jwk, SignatureAlgorithm algorithm, String... fields) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("kty", jwk.get("kty").asText());
+        result.put("kid", jwk.get("kid").asText());
+        result.put("use", "sig");
+        result.put("alg", algorithm.getValue());
+        for (String field : fields) {
+            result.put(field, jwk.get(field).asText());
+        }
+        if (jwk.has("nbf")) {
+            result.put("nbf", jwk.get("nbf").asLong());
+        }
+        return result;
+    }
+
+    private static String text(JsonNode jwk, String field) {
+        JsonNode value = jwk.get(field);
+        if (value == null || value.asText().isBlank()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value.asText();
+    }
+
+    private static byte[] bytes(JsonNode jwk, String field) {
+        return Base64.getUrlDecoder().decode(text(jwk, field));
+    }
+
+    private static BigInteger integer(JsonNode jwk, String field) {
+        return new BigInteger(1, bytes(jwk, field));
+    }
+}
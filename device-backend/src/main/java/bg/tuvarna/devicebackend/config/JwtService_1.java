@@ -3,75 +3,150 @@ package bg.tuvarna.devicebackend.config;
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.SecretKey;
+import java.security.Key;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class JwtService {
     private static final Logger logger = LoggerFactory.getLogger(JwtService.class);
-    private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private static final String ROLE_CLAIM = "role";
+    private static final String EMAIL_CLAIM = "email";
+    private final JwtKeySet keySet;
+    private final Duration accessTokenTtl;
+    private final JwtParser parser;
+    private final int verifiedCacheSize;
+    private final Map<String, CachedToken> verifiedTokens = new ConcurrentHashMap<>();
 
-    public String extractId(String token) {
-        return extractClaim(token, Claims::getSubject);
+    public JwtService(JwtKeySet keySet,
+                      @Value("${security.jwt.access-token-ttl:PT2H}") Duration accessTokenTtl,
+                      @Value("${security.jwt.verified-cache-size:1024}") int verifiedCacheSize) {
+        this.keySet = keySet;
+        this.accessTokenTtl = accessTokenTtl;
+        // the key is picked by the kid header, so tokens from every node sharing the key set verify here
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                Key key = keySet.verificationKey(header.getKeyId(), header.getAlgorithm());
+                if (key == null) {
+                    throw new SignatureException("Unknown or retired signing key " + header.getKeyId());
+                }
+                return key;
+            }
+        }).build();
+        this.verifiedCacheSize = verifiedCacheSize;
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    /**
+     * Parses and verifies the token once. Returns null when the token has expired and throws when it is
+     * malformed or its signature does not match. Recently verified tokens are kept in a bounded concurrent
+     * map, so a client repeating the same token skips the signature check until the token expires, and
+     * request threads never wait on each other for a lookup.
+     * Lookups compare the whole token, so a forged payload never hits a cached entry. A hit still checks
+     * that the signing key is in the key set and not retired, so removing a key revokes its cached tokens too.
+     */
+    public VerifiedToken verify(String token) {
+        Instant now = Instant.now();
+        CachedToken cached = cached(token);
+        if (cached != null) {
+            if (cached.token().isExpired(now)) {
+                evict(token);
+                return null;
+            }
+            if (keySet.verificationKey(cached.kid(), cached.algorithm()) == null) {
+                evict(token);
+                throw new SignatureException("Unknown or retired signing key " + cached.kid());
+            }
+            return cached.token();
+        }
+
+        Jws<Claims> jws;
+        try {
+            jws = parse(token);
+        } catch (ExpiredJwtException e) {
+            return null;
+        }
+
+        Claims claims = jws.getBody();
+
+        String role = claims.get(ROLE_CLAIM, String.class);
+        VerifiedToken verified = new VerifiedToken(
+                Long.valueOf(claims.getSubject()),
+                claims.get(EMAIL_CLAIM, String.class),
+                role == null ? null : UserRole.valueOf(role),
+                claims.getExpiration().toInstant()
+        );
+        cache(token, new CachedToken(verified, jws.getHeader().getKeyId(), jws.getHeader().getAlgorithm()));
+        return verified;
     }
 
     public String generateToken(User user) {
-        return generateToken(new HashMap<>(), user);
+        Map<String, Object> claims = new HashMap<>();
+        if (user.getRole() != null) {
+            claims.put(ROLE_CLAIM, user.getRole().name());
+        }
+        if (user.getEmail() != null) {
+            claims.put(EMAIL_CLAIM, user.getEmail());
+        }
+        return generateToken(claims, user);
     }
 
     public String generateToken(Map<String, Object> extraClaims, User user) {
+        JwtKey signingKey = keySet.signingKey();
         return Jwts
                 .builder()
+                .setHeaderParam(JwsHeader.KEY_ID, signingKey.kid())
                 .setClaims(extraClaims)
                 .setSubject(user.getId().toString())
                 .setIssuedAt(new Date())
-                .setExpiration(Date.from(Instant.now().plusSeconds(2L * 60 * 60))).signWith(key)
+                .setExpiration(Date.from(Instant.now().plus(accessTokenTtl))).signWith(signingKey.signingKey(), signingKey.algorithm())
                 .compact();
     }
 
-    public boolean isTokenValid(String token, User user) {
-        final long id = Long.parseLong(extractId(token));
-        return (id == user.getId()) && !isTokenExpired(token);
+    private Jws<Claims> parse(String token) {
+        try {
+            return parser.parseClaimsJws(token);
+        } catch (MalformedJwtException e) {
+            logger.error("Not valid JWT token");
+            throw new CustomException("Not valid JWT token", ErrorCode.Failed);
+        }
     }
 
-    public boolean isTokenExpired(String token) {
-        return extractExpiration(token) == null;
+    private CachedToken cached(String token) {
+        return verifiedCacheSize <= 0 ? null : verifiedTokens.get(token);
     }
 
-    private Date extractExpiration(String token) {
-        try {
-            return extractClaim(token, Claims::getExpiration);
-        } catch (ExpiredJwtException e) {
-            return null;
+    // when full, expired tokens are dropped first and the whole map only if that frees nothing
+    private void cache(String token, CachedToken verified) {
+        if (verifiedCacheSize <= 0) {
+            return;
+        }
+        if (verifiedTokens.size() >= verifiedCacheSize) {
+            Instant now = Instant.now();
+            verifiedTokens.values().removeIf(cached -> cached.token().isExpired(now));
+            if (verifiedTokens.size() >= verifiedCacheSize) {
+                verifiedTokens.clear();
+            }
         }
+        verifiedTokens.put(token, verified);
     }
 
-    private Claims extractAllClaims(String token) {
-        try {
-            return Jwts
-                    .parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-        } catch (MalformedJwtException e) {
-            logger.error("Not valid JWT token");
-            throw new CustomException("Not valid JWT token", ErrorCode.Failed);
-        }
+    private void evict(String token) {
+        verifiedTokens.remove(token);
+    }
+
+    private record CachedToken(VerifiedToken token, String kid, String algorithm) {
     }
-}
\ No newline at end of file
+}
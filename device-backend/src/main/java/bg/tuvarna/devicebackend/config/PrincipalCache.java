@@ -0,0 +1,62 @@
+package bg.tuvarna.devicebackend.config;
+
+import bg.tuvarna.devicebackend.models.entities.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Optional short-lived cache of users loaded for authenticated requests, enabled with
+ * security.jwt.principal-cache.enabled. When disabled the principal is built from the token claims
+ * alone. When enabled, the user is loaded from the database at most once per TTL, so changes to the
+ * account reach running sessions quickly. Entries are dropped by {@link #invalidate(Long)} on every
+ * account update.
+ */
+@Component
+public class PrincipalCache {
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    public PrincipalCache(@Value("${security.jwt.principal-cache.enabled:false}") boolean enabled,
+                          @Value("${security.jwt.principal-cache.ttl:PT30S}") Duration ttl,
+                          @Value("${security.jwt.principal-cache.max-entries:10000}") int maxEntries) {
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public User get(Long id, Supplier<User> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(id);
+        if (entry != null && now - entry.loadedAt < ttlNanos) {
+            return entry.user;
+        }
+
+        User user = loader.get();
+        if (entries.size() >= maxEntries) {
+            entries.entrySet().removeIf(e -> now - e.getValue().loadedAt >= ttlNanos);
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+        }
+        entries.put(id, new Entry(user, now));
+        return user;
+    }
+
+    public void invalidate(Long id) {
+        entries.remove(id);
+    }
+
+    private record Entry(User user, long loadedAt) {
+    }
+}
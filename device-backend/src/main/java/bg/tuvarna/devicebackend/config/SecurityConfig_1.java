@@ -21,6 +21,14 @@ import java.util.List;
 @EnableWebSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
+    static final String[] PUBLIC_PATHS = {
+            "/api/v1/passports/getBySerialId/*", "/api/v1/passports/getBySerialIds", "/api/v1/users/login", "/api/v1/users/registration",
+            "/api/v1/users/refresh", "/api/v1/users/logout",
+            "/swagger-ui", "/swagger", "/swagger-ui/**", "/swagger/**", "/login/**",
+            "/api/v1/devices/exists/", "/api/v1/devices/addAnonymousDevice", "/api/v1/devices/exists/*",
+            "/.well-known/jwks.json"
+    };
+
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final ApplicationConfig applicationConfig;
     private final AuthenticationFilter authenticationFilter;
@@ -30,10 +38,9 @@ public class SecurityConfig {
         http.csrf(AbstractHttpConfigurer::disable);
         http.cors(cors -> cors.configurationSource(SecurityConfig::getCorsConfiguration));
         http.authorizeHttpRequests(auth -> {
-            auth.requestMatchers("/api/v1/passports/getBySerialId/*", "/api/v1/users/login", "/api/v1/users/registration", "/swagger-ui", "/swagger", "/swagger-ui/**", "/swagger/**", "/login/**").permitAll();
-            auth.requestMatchers("/api/v1/devices/exists/", "/api/v1/devices/addAnonymousDevice", "/api/v1/devices/exists/*").permitAll();
+            auth.requestMatchers(PUBLIC_PATHS).permitAll();
             auth.requestMatchers("/api/v1/users/update", "/api/v1/devices/addDevice", "api/v1/users/getUser", "/api/v1/users/changePassword").hasAnyAuthority(UserRole.USER.toString(), UserRole.ADMIN.toString());
-            auth.requestMatchers("/api/v1/passports/**", "/api/v1/users", "/api/v1/users/*", "/api/v1/renovations", "/api/v1/devices", "/api/v1/devices/**").hasAuthority(UserRole.ADMIN.toString());
+            auth.requestMatchers("/api/v1/passports/**", "/api/v1/users", "/api/v1/users/*", "/api/v1/renovations", "/api/v1/devices", "/api/v1/devices/**", "/api/v1/reports/**").hasAuthority(UserRole.ADMIN.toString());
             auth.anyRequest().authenticated();
         });
         http.authenticationManager(applicationConfig.authenticationManager());
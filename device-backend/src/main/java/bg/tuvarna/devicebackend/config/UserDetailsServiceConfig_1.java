@@ -3,21 +3,45 @@ package bg.tuvarna.devicebackend.config;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-public class UserDetailsServiceConfig implements UserDetailsService {
+public class UserDetailsServiceConfig implements UserDetailsService, UserDetailsPasswordService {
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
+    /**
+     * Login lookup by email or phone. Devices and their passports are fetched in the same query,
+     * so the principal can be returned to the client without loading the user again.
+     */
     @Override
     public User loadUserByUsername(String username) throws UsernameNotFoundException {
-        final User profile = userRepository.findById(Long.valueOf(username)).orElse(null);
+        return userRepository.findForLogin(username).orElseThrow(() -> new UsernameNotFoundException(username));
+    }
+
+    public User loadUserById(String id) throws UsernameNotFoundException {
+        final User profile = userRepository.findById(Long.valueOf(id)).orElse(null);
         if (profile == null) {
-            throw new UsernameNotFoundException(username);
+            throw new UsernameNotFoundException(id);
         }
         return profile;
     }
+
+    /**
+     * Called after a successful login when the stored hash uses another BCrypt cost than configured.
+     * The cached principal holds the old hash, so it is dropped like on any other account update.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User profile = (User) user;
+        userRepository.updatePassword(profile.getId(), newPassword);
+        principalCache.invalidate(profile.getId());
+        profile.setPassword(newPassword);
+        return profile;
+    }
 }
\ No newline at end of file
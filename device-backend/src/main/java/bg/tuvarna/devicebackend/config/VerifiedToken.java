@@ -0,0 +1,31 @@
+package bg.tuvarna.devicebackend.config;
+
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+
+import java.time.Instant;
+
+/**
+ * Claims of a token whose signature and expiration were already checked by {@link JwtService#verify(String)}.
+ */
+public record VerifiedToken(Long userId, String email, UserRole role, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    /**
+     * Returns the principal described by the claims, or null for tokens issued without a role claim.
+     */
+    public User toPrincipal() {
+        if (role == null) {
+            return null;
+        }
+
+        return User.builder()
+                .id(userId)
+                .email(email)
+                .role(role)
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package bg.tuvarna.devicebackend.controllers;
+
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorResponse;
+import bg.tuvarna.devicebackend.models.dtos.AuthResponseDTO;
+import bg.tuvarna.devicebackend.models.dtos.RefreshTokenVO;
+import bg.tuvarna.devicebackend.services.RefreshTokenService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/users")
+@AllArgsConstructor
+public class AuthController {
+    private final RefreshTokenService refreshTokenService;
+
+    @Operation(summary = "Refresh access token.",
+            description = "Exchanges a refresh token from login or a previous refresh for a new access token and a new refresh token. " +
+                    "Every refresh token can be used once, reusing one ends the whole session.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Token refreshed.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AuthResponseDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Refresh token is invalid, expired or already used.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))})
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponseDTO> refresh(@RequestBody RefreshTokenVO refreshTokenVO) {
+        return ResponseEntity.ok(refreshTokenService.refresh(refreshTokenVO.refreshToken()));
+    }
+
+    @Operation(summary = "Logout user.",
+            description = "Revokes the refresh token and every token rotated from the same login.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Session ended."),
+            @ApiResponse(responseCode = "400", description = "Refresh token is invalid or expired.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))})
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody RefreshTokenVO refreshTokenVO) {
+        refreshTokenService.revoke(refreshTokenVO.refreshToken());
+        return ResponseEntity.ok().build();
+    }
+}
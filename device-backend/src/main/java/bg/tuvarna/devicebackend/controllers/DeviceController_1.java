@@ -1,10 +1,15 @@
 package bg.tuvarna.devicebackend.controllers;
 
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorResponse;
+import bg.tuvarna.devicebackend.models.dtos.DeviceBulkResultVO;
 import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceStatisticsVO;
 import bg.tuvarna.devicebackend.models.dtos.DeviceUpdateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceVO;
 import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.services.DeviceBulkService;
 import bg.tuvarna.devicebackend.services.DeviceService;
+import bg.tuvarna.devicebackend.services.DeviceStatisticsService;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -13,21 +18,33 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.time.LocalDate;
+
 @RestController
 @RequestMapping("/api/v1/devices")
 @AllArgsConstructor
 public class DeviceController {
     private final DeviceService deviceService;
+    private final DeviceBulkService deviceBulkService;
+    private final DeviceStatisticsService deviceStatisticsService;
 
-    @Operation(description = "Return device by id for logged in user.",
+    @Operation(description = "Return device by id for logged in user. Renovations are included only when requested.",
             summary = "Return device by id")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Device found."),
+            @ApiResponse(responseCode = "400", description = "Device not found.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))})
     @GetMapping("/{id}")
     @SecurityRequirement(name = "bearerAuth")
-    public Device findDevice(@PathVariable String id) {
-        return deviceService.findDevice(id);
+    public DeviceVO findDevice(@PathVariable String id,
+                               @RequestParam(defaultValue = "false") boolean renovations) {
+        return deviceService.getDeviceView(id, renovations);
     }
 
     @Operation(description = "Checks if device exists, which means the user is registered.",
@@ -51,16 +68,52 @@ public class DeviceController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(description = "Register devices from an NDJSON stream of DeviceCreateVO rows. " +
+            "Rows without userId are registered as anonymous devices. Every row gets a result with its line number.",
+            summary = "Bulk register devices")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Registration finished, see the per-row results")
+    })
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<DeviceBulkResultVO> addDevices(InputStream body) {
+        return ResponseEntity.ok(deviceBulkService.registerDevices(body));
+    }
+
     @Operation(summary = "Returns devices.",
-            description = "Returns devices based on search.")
+            description = "Returns devices based on search. Pass cursor (empty for the first page) to page by serial number " +
+                    "with the returned nextCursor instead of by page number.")
     @GetMapping
     @SecurityRequirement(name = "bearerAuth")
-    public ResponseEntity<CustomPage<Device>> getUsers(@RequestParam(required = false) String searchBy,
-                                                       @RequestParam(defaultValue = "1") int page,
-                                                       @RequestParam(defaultValue = "10") int size) {
+    public ResponseEntity<CustomPage<DeviceVO>> getUsers(@RequestParam(required = false) String searchBy,
+                                                         @RequestParam(defaultValue = "1") int page,
+                                                         @RequestParam(defaultValue = "10") int size,
+                                                         @RequestParam(required = false) String cursor) {
+        if (cursor != null)
+            return ResponseEntity.ok(deviceService.getDevicesAfter(searchBy, cursor, size));
         return ResponseEntity.ok(deviceService.getDevices(searchBy, page, size));
     }
 
+    @Operation(summary = "Returns device statistics.",
+            description = "Returns device counts per passport, registered vs anonymous and in vs out of warranty, " +
+                    "read from the pre-aggregated statistics.")
+    @GetMapping("/statistics")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<DeviceStatisticsVO> getStatistics() {
+        return ResponseEntity.ok(deviceStatisticsService.getStatistics());
+    }
+
+    @Operation(summary = "Returns devices with expiring warranties.",
+            description = "Returns devices whose warranty expires between from and to (inclusive), soonest first.")
+    @GetMapping("/expiringWarranties")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<CustomPage<DeviceVO>> getExpiringWarranties(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                      @RequestParam(defaultValue = "1") int page,
+                                                                      @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(deviceService.getExpiringWarranties(from, to, page, size));
+    }
+
     @Operation(description = "Register device for logged in user.",
             summary = "Register device for logged in user")
     @ApiResponses(value = {
@@ -0,0 +1,43 @@
+package bg.tuvarna.devicebackend.controllers;
+
+import bg.tuvarna.devicebackend.services.DataExportService;
+import bg.tuvarna.devicebackend.utils.ExportFormat;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/v1")
+@AllArgsConstructor
+public class ExportController {
+    private final DataExportService dataExportService;
+
+    @Operation(description = "Stream all devices with their passport and owner as CSV or NDJSON.",
+            summary = "Export devices")
+    @GetMapping("/devices/export")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<StreamingResponseBody> exportDevices(@RequestParam(defaultValue = "CSV") ExportFormat format) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=devices." + format.name().toLowerCase())
+                .body(outputStream -> dataExportService.exportDevices(format, outputStream));
+    }
+
+    @Operation(description = "Stream all users with the serial numbers of their devices as CSV or NDJSON.",
+            summary = "Export users")
+    @GetMapping("/users/export")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "CSV") ExportFormat format) {
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=users." + format.name().toLowerCase())
+                .body(outputStream -> dataExportService.exportUsers(format, outputStream));
+    }
+}
@@ -0,0 +1,28 @@
+package bg.tuvarna.devicebackend.controllers;
+
+import bg.tuvarna.devicebackend.config.JwtKeySet;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@AllArgsConstructor
+public class JwksController {
+    private final JwtKeySet jwtKeySet;
+
+    @Operation(description = "Returns the public keys that verify access tokens, including keys scheduled to become active. " +
+            "Shared HMAC secrets are never published.",
+            summary = "Public JWT key set")
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getKeySet() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)).cachePublic())
+                .body(jwtKeySet.publicKeySet());
+    }
+}
@@ -1,23 +1,43 @@
 package bg.tuvarna.devicebackend.controllers;
 
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorResponse;
 import bg.tuvarna.devicebackend.models.dtos.PassportForSerialNumberVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportResultVO;
+import bg.tuvarna.devicebackend.models.dtos.SerialPassportVO;
 import bg.tuvarna.devicebackend.models.dtos.PassportVO;
 import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.services.PassportImportService;
 import bg.tuvarna.devicebackend.services.PassportService;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.AllArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
 @RestController
 @RequestMapping("api/v1/passports")
 @AllArgsConstructor
 public class PassportController {
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final CacheControl SERIAL_HIT_CACHE = CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic();
+    private static final CacheControl SERIAL_MISS_CACHE = CacheControl.maxAge(Duration.ofSeconds(10)).cachePublic();
+
     private final PassportService passportService;
+    private final PassportImportService passportImportService;
 
     @Operation(description = "Create/update passport",
             summary = "Create/update passport")
@@ -31,6 +51,21 @@ public class PassportController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(description = "Import passports from a CSV or NDJSON stream. " +
+            "CSV columns are name,model,serialPrefix,warrantyMonths,fromSerialNumber,toSerialNumber. " +
+            "Rows that fail validation are reported by line number, the rest are saved.",
+            summary = "Bulk import passports")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished, see the per-row errors")
+    })
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<PassportImportResultVO> importPassports(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                  InputStream body) {
+        boolean csv = MediaType.parseMediaType(contentType).isCompatibleWith(TEXT_CSV);
+        return ResponseEntity.ok(passportImportService.importPassports(body, csv));
+    }
+
     @Operation(description = "Get passports",
             summary = "Get passports")
     @GetMapping
@@ -49,10 +84,41 @@ public class PassportController {
         return ResponseEntity.ok().build();
     }
 
-    @Operation(description = "Get passport by serialId",
+    @Operation(description = "Get passport by serialId. Responses carry an ETag and Cache-Control, " +
+            "so clients can revalidate with If-None-Match and get a 304.",
             summary = "Get passport by serialId")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Passport found."),
+            @ApiResponse(responseCode = "304", description = "Passport not modified."),
+            @ApiResponse(responseCode = "400", description = "Passport not found.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))})
     @GetMapping("/getBySerialId/{serialId}")
-    public ResponseEntity<PassportForSerialNumberVO> getPassportForSerialId(@PathVariable String serialId) {
-        return ResponseEntity.ok(new PassportForSerialNumberVO(passportService.findPassportBySerialId(serialId)));
+    public ResponseEntity<?> getPassportForSerialId(@PathVariable String serialId) {
+        return passportService.lookupPassportBySerialId(serialId)
+                .<ResponseEntity<?>>map(passport -> {
+                    PassportForSerialNumberVO vo = new PassportForSerialNumberVO(passport);
+                    return ResponseEntity.ok()
+                            .eTag(Integer.toHexString(Objects.hash(vo.id(), vo.name(), vo.model())))
+                            .cacheControl(SERIAL_HIT_CACHE)
+                            .body(vo);
+                })
+                .orElseGet(() -> ResponseEntity.badRequest()
+                        .cacheControl(SERIAL_MISS_CACHE)
+                        .body(new ErrorResponse("Passport not found for serial number: " + serialId, ErrorCode.Failed)));
+    }
+
+    @Operation(description = "Resolve a list of serial ids to passports in one call. " +
+            "Every distinct serial id gets an item, with found=false when no passport matches.",
+            summary = "Get passports by serialIds")
+    @PostMapping("/getBySerialIds")
+    public ResponseEntity<List<SerialPassportVO>> getPassportsForSerialIds(@RequestBody List<String> serialIds) {
+        return ResponseEntity.ok(passportService.lookupPassportsBySerialIds(serialIds)
+                .entrySet()
+                .stream()
+                .map(entry -> entry.getValue() == null
+                        ? new SerialPassportVO(entry.getKey(), false, null)
+                        : new SerialPassportVO(entry.getKey(), true, new PassportForSerialNumberVO(entry.getValue())))
+                .toList());
     }
 }
\ No newline at end of file
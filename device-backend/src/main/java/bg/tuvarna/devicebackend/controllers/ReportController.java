@@ -0,0 +1,37 @@
+package bg.tuvarna.devicebackend.controllers;
+
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorResponse;
+import bg.tuvarna.devicebackend.models.entities.WarrantyExpiryReport;
+import bg.tuvarna.devicebackend.models.enums.ReportDimension;
+import bg.tuvarna.devicebackend.services.WarrantyReportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/reports")
+@AllArgsConstructor
+public class ReportController {
+    private final WarrantyReportService warrantyReportService;
+
+    @Operation(description = "Returns the latest daily report of expiring warranties, grouped by passport or by owner.",
+            summary = "Latest expiring-warranty report")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Report found."),
+            @ApiResponse(responseCode = "400", description = "Report not generated yet.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ErrorResponse.class)))})
+    @GetMapping("/warrantyExpiry")
+    @SecurityRequirement(name = "bearerAuth")
+    public ResponseEntity<List<WarrantyExpiryReport>> getWarrantyExpiryReport(@RequestParam(defaultValue = "PASSPORT") ReportDimension dimension) {
+        return ResponseEntity.ok(warrantyReportService.getLatestReport(dimension));
+    }
+}
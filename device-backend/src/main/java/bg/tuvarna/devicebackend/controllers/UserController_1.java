@@ -51,12 +51,16 @@ public class UserController {
     }
 
     @Operation(summary = "Returns users.",
-            description = "Returns users based on search.")
+            description = "Returns users based on search. Pass cursor (empty for the first page) to page by id " +
+                    "with the returned nextCursor instead of by page number.")
     @GetMapping
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<CustomPage<UserListing>> getUsers(@RequestParam(required = false) String searchBy,
                                                             @RequestParam(defaultValue = "1") int page,
-                                                            @RequestParam(defaultValue = "10") int size) {
+                                                            @RequestParam(defaultValue = "10") int size,
+                                                            @RequestParam(required = false) String cursor) {
+        if (cursor != null)
+            return ResponseEntity.ok(userService.getUsersAfter(searchBy, cursor, size));
         return ResponseEntity.ok(userService.getUsers(searchBy, page, size));
     }
 
@@ -88,6 +92,6 @@ public class UserController {
     @GetMapping("/getUser")
     @SecurityRequirement(name = "bearerAuth")
     public ResponseEntity<UserVO> getUser(@AuthenticationPrincipal User user) {
-        return ResponseEntity.ok(new UserVO(user));
+        return ResponseEntity.ok(userService.getUserView(user.getId()));
     }
 }
\ No newline at end of file
@@ -12,7 +12,8 @@ public enum ErrorCode {
     WrongCredentials(2),
     NotRegistered(3),
     Failed(4),
-    Validation(5);
+    Validation(5),
+    Busy(6);
 
     private final int code;
 
@@ -0,0 +1,11 @@
+package bg.tuvarna.devicebackend.controllers.execptions;
+
+/**
+ * Thrown when a bounded resource can't take more work. Answered with 503 and a Retry-After header,
+ * so clients back off instead of piling up on busy request threads.
+ */
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
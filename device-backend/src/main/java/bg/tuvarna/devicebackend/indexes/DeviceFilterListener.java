@@ -0,0 +1,49 @@
+package bg.tuvarna.devicebackend.indexes;
+
+import bg.tuvarna.devicebackend.models.entities.Device;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps {@link DeviceSerialFilter} in sync with devices saved or removed through JPA.
+ * Additions are applied right away and again after commit, see {@link DeviceSerialFilter#add(String)}.
+ * A serial that ends up rolled back only costs a false positive.
+ */
+public class DeviceFilterListener {
+    private final ObjectProvider<DeviceSerialFilter> deviceSerialFilter;
+
+    public DeviceFilterListener(ObjectProvider<DeviceSerialFilter> deviceSerialFilter) {
+        this.deviceSerialFilter = deviceSerialFilter;
+    }
+
+    @PostPersist
+    public void onSave(Device device) {
+        DeviceSerialFilter filter = deviceSerialFilter.getIfAvailable();
+        if (filter != null) {
+            filter.add(device.getSerialNumber());
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Device device) {
+        DeviceSerialFilter filter = deviceSerialFilter.getIfAvailable();
+        if (filter == null) {
+            return;
+        }
+
+        String serialNumber = device.getSerialNumber();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            filter.remove(serialNumber);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                filter.remove(serialNumber);
+            }
+        });
+    }
+}
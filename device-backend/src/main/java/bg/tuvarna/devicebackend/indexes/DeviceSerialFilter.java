@@ -0,0 +1,124 @@
+package bg.tuvarna.devicebackend.indexes;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter of registered serial numbers, used to answer "not registered" without a query.
+ * A miss is definite; a hit may be a false positive and has to be confirmed by the database.
+ * Deleted serials can't be removed from a Bloom filter, so they only cost a query until the next
+ * rebuild. The filter is rebuilt when it is full or holds too many deleted serials, and periodically.
+ * <p>
+ * The filter only sees devices registered on this node between rebuilds, so with several replicas a
+ * committed device could be reported as not registered for up to devices.exists-filter.rebuild-interval.
+ * It is therefore off by default and meant for single-node deployments only, enabled with
+ * devices.exists-filter.enabled. Until the first build finishes, or while disabled, every serial is
+ * reported as a possible hit, so every lookup goes to the primary key.
+ */
+@Component
+@RequiredArgsConstructor
+public class DeviceSerialFilter {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceSerialFilter.class);
+    private static final long MIN_CAPACITY = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong removed = new AtomicLong();
+    // add and the swap in rebuild exclude each other, so no add falls between the two filters
+    private final Object swapLock = new Object();
+    @Value("${devices.exists-filter.enabled:false}")
+    private boolean enabled;
+    private volatile BloomFilter current;
+    private volatile BloomFilter building;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${devices.exists-filter.rebuild-interval:PT1H}",
+            initialDelayString = "${devices.exists-filter.rebuild-interval:PT1H}")
+    public void refresh() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${devices.exists-filter.check-interval:PT10M}")
+    public void rebuildIfStale() {
+        BloomFilter filter = current;
+        if (filter != null && (filter.isFull() || removed.get() > filter.getCapacity() / 10)) {
+            rebuild();
+        }
+    }
+
+    public synchronized void rebuild() {
+        Long count = jdbcTemplate.queryForObject("select count(*) from devices", Long.class);
+        BloomFilter filter = BloomFilter.create(Math.max(MIN_CAPACITY, (count == null ? 0 : count) * 2), FALSE_POSITIVE_RATE);
+        // serials added while the table is scanned go to both filters, see add
+        synchronized (swapLock) {
+            building = filter;
+        }
+        removed.set(0);
+        jdbcTemplate.query("select serial_number from devices", rs -> {
+            filter.add(rs.getString(1));
+        });
+        synchronized (swapLock) {
+            current = filter;
+            building = null;
+        }
+        logger.info("Device serial filter rebuilt with capacity {}", filter.getCapacity());
+    }
+
+    public boolean mightContain(String serialNumber) {
+        BloomFilter filter = current;
+        return filter == null || filter.mightContain(serialNumber);
+    }
+
+    /**
+     * Adds the serial right away, so a device is never denied while its transaction commits, and once
+     * more after commit: a rebuild scan that started before the commit doesn't see the row, but the
+     * second add reaches the filter it is building.
+     */
+    public void add(String serialNumber) {
+        addNow(serialNumber);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addNow(serialNumber);
+                }
+            });
+        }
+    }
+
+    private void addNow(String serialNumber) {
+        synchronized (swapLock) {
+            BloomFilter filter = current;
+            if (filter != null) {
+                filter.add(serialNumber);
+            }
+            BloomFilter next = building;
+            if (next != null) {
+                next.add(serialNumber);
+            }
+        }
+    }
+
+    public void remove(String serialNumber) {
+        removed.incrementAndGet();
+    }
+}
@@ -0,0 +1,55 @@
+package bg.tuvarna.devicebackend.indexes;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Keeps {@link PassportSerialIndex} in sync with every write to the passports table,
+ * including writes done directly through the repository. Changes are applied after commit,
+ * so a rolled back save never reaches the index.
+ * The index is resolved lazily because JPA slices (e.g. @DataJpaTest) do not register it.
+ */
+public class PassportIndexListener {
+    private final ObjectProvider<PassportSerialIndex> passportSerialIndex;
+
+    public PassportIndexListener(ObjectProvider<PassportSerialIndex> passportSerialIndex) {
+        this.passportSerialIndex = passportSerialIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Passport passport) {
+        PassportSerialIndex index = passportSerialIndex.getIfAvailable();
+        if (index != null) {
+            afterCommit(() -> index.put(passport));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Passport passport) {
+        PassportSerialIndex index = passportSerialIndex.getIfAvailable();
+        if (index != null) {
+            Long id = passport.getId();
+            afterCommit(() -> index.remove(id));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,48 @@
+package bg.tuvarna.devicebackend.indexes;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the exclusion constraint that keeps serial ranges of one prefix from overlapping, so the rule
+ * holds across nodes and not only against the in-memory {@link PassportSerialIndex}. The schema is managed
+ * by Hibernate, which can't declare exclusion constraints, so it is added on startup. On other databases
+ * (H2 in tests) there is a single node and the index check is enough.
+ */
+@Component
+@RequiredArgsConstructor
+public class PassportRangeConstraint {
+    private static final Logger logger = LoggerFactory.getLogger(PassportRangeConstraint.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createConstraint() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            return;
+        }
+
+        try {
+            Integer existing = jdbcTemplate.queryForObject("select count(*) from pg_constraint where conname = ?",
+                    Integer.class, Passport.SERIAL_RANGE_CONSTRAINT);
+            if (existing != null && existing > 0) {
+                return;
+            }
+
+            jdbcTemplate.execute("create extension if not exists btree_gist");
+            jdbcTemplate.execute("alter table passports add constraint " + Passport.SERIAL_RANGE_CONSTRAINT +
+                    " exclude using gist (serial_prefix with =, int8range(from_serial_number, to_serial_number, '[]') with &&)");
+        } catch (DataAccessException e) {
+            logger.error("Failed to create the passport serial range constraint, overlaps are only checked per node", e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package bg.tuvarna.devicebackend.indexes;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.mappers.PassportMapper;
+import bg.tuvarna.devicebackend.utils.SerialNumberFormat;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index used to resolve a serial number to its passport without a DB round-trip.
+ * Passports are stored in a prefix trie keyed by serialPrefix and every trie node keeps the
+ * ranges of its prefix sorted by fromSerialNumber, so a lookup costs O(prefix length + log ranges).
+ * Ranges under one prefix never overlap, which is what lets overlap checks stop after the first
+ * range that ends before the requested one starts.
+ * The index is filled on startup and kept up to date by {@link PassportIndexListener}.
+ */
+@Component
+public class PassportSerialIndex {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Passport> passportsById = new HashMap<>();
+    private Node root = new Node();
+
+    public Optional<Passport> find(String serialId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(resolve(serialId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Resolves many serials under a single read lock. Serials missing from the index map to null.
+     */
+    public Map<String, Passport> findAll(List<String> serialIds) {
+        Map<String, Passport> result = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String serialId : serialIds) {
+                if (!result.containsKey(serialId)) {
+                    result.put(serialId, resolve(serialId));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<Passport> findOverlap(String serialPrefix, long fromSerialNumber, long toSerialNumber, Long excludedId) {
+        lock.readLock().lock();
+        try {
+            Node node = findNode(serialPrefix);
+            if (node == null) {
+                return Optional.empty();
+            }
+
+            Map.Entry<Long, Passport> entry = node.ranges.floorEntry(toSerialNumber);
+            while (entry != null && entry.getValue().getToSerialNumber() >= fromSerialNumber) {
+                if (!Objects.equals(entry.getValue().getId(), excludedId)) {
+                    return Optional.of(entry.getValue());
+                }
+                entry = node.ranges.lowerEntry(entry.getKey());
+            }
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(Passport passport) {
+        Passport snapshot = PassportMapper.copy(passport);
+
+        lock.writeLock().lock();
+        try {
+            removeById(snapshot.getId());
+            insert(snapshot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            removeById(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild(Collection<Passport> passports) {
+        lock.writeLock().lock();
+        try {
+            root = new Node();
+            passportsById.clear();
+            for (Passport passport : passports) {
+                insert(PassportMapper.copy(passport));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Passport resolve(String serialId) {
+        if (serialId == null) {
+            return null;
+        }
+
+        Passport match = null;
+        Node node = root;
+        int depth = 0;
+        while (node != null) {
+            Passport candidate = node.findRange(serialId, depth);
+            if (candidate != null) {
+                match = candidate;
+            }
+            if (depth == serialId.length()) {
+                break;
+            }
+            node = node.children.get(serialId.charAt(depth++));
+        }
+        return match;
+    }
+
+    private void insert(Passport passport) {
+        Node node = root;
+        String prefix = passport.getSerialPrefix() == null ? "" : passport.getSerialPrefix();
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+        }
+        node.ranges.put(passport.getFromSerialNumber(), passport);
+        passportsById.put(passport.getId(), passport);
+    }
+
+    private void removeById(Long id) {
+        Passport existing = passportsById.remove(id);
+        if (existing == null) {
+            return;
+        }
+
+        Node node = findNode(existing.getSerialPrefix());
+        if (node != null) {
+            node.ranges.remove(existing.getFromSerialNumber(), existing);
+        }
+    }
+
+    private Node findNode(String serialPrefix) {
+        Node node = root;
+        String prefix = serialPrefix == null ? "" : serialPrefix;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final TreeMap<Long, Passport> ranges = new TreeMap<>();
+
+        private Passport findRange(String serialId, int prefixLength) {
+            if (ranges.isEmpty()) {
+                return null;
+            }
+
+            long serialNumber = SerialNumberFormat.parseSuffix(serialId, prefixLength);
+            if (serialNumber == SerialNumberFormat.INVALID) {
+                return null;
+            }
+
+            Map.Entry<Long, Passport> entry = ranges.floorEntry(serialNumber);
+            if (entry == null || serialNumber > entry.getValue().getToSerialNumber()) {
+                return null;
+            }
+            return entry.getValue();
+        }
+    }
+}
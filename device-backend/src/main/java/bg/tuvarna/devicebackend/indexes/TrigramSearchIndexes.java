@@ -0,0 +1,59 @@
+package bg.tuvarna.devicebackend.indexes;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the pg_trgm indexes used by the ranked device search. The schema is managed by Hibernate,
+ * so the indexes are created on startup once the tables exist. On other databases (H2 in tests)
+ * nothing is created and the search falls back to the portable LIKE query.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrigramSearchIndexes {
+    private static final Logger logger = LoggerFactory.getLogger(TrigramSearchIndexes.class);
+    private static final List<String> INDEXES = List.of(
+            "create extension if not exists pg_trgm",
+            "create index if not exists devices_serial_number_trgm_idx on devices using gin (lower(serial_number) gin_trgm_ops)",
+            "create index if not exists devices_user_id_idx on devices (user_id)",
+            "create index if not exists devices_passport_id_idx on devices (passport_id)",
+            "create index if not exists users_full_name_trgm_idx on users using gin (lower(full_name) gin_trgm_ops)",
+            "create index if not exists users_address_trgm_idx on users using gin (lower(address) gin_trgm_ops)",
+            "create index if not exists users_email_trgm_idx on users using gin (lower(email) gin_trgm_ops)",
+            "create index if not exists users_phone_trgm_idx on users using gin (lower(phone) gin_trgm_ops)",
+            "create index if not exists passports_name_trgm_idx on passports using gin (lower(name) gin_trgm_ops)",
+            "create index if not exists passports_model_trgm_idx on passports using gin (lower(model) gin_trgm_ops)"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean enabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            logger.info("Trigram search is not available on {}, using LIKE search", database);
+            return;
+        }
+
+        try {
+            INDEXES.forEach(jdbcTemplate::execute);
+            enabled = true;
+        } catch (DataAccessException e) {
+            logger.warn("Failed to create trigram indexes, using LIKE search", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
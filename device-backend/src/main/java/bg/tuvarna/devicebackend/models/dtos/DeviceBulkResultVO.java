@@ -0,0 +1,10 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.util.List;
+
+public record DeviceBulkResultVO(
+        int registered,
+        int failed,
+        List<DeviceBulkRowResultVO> results
+) {
+}
@@ -0,0 +1,9 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+public record DeviceBulkRowResultVO(
+        long line,
+        String serialNumber,
+        boolean registered,
+        String error
+) {
+}
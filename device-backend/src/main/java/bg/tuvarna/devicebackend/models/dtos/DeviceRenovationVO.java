@@ -0,0 +1,15 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.time.LocalDate;
+
+/**
+ * A renovation projection together with its device serial number, used to attach renovations to several devices.
+ */
+public record DeviceRenovationVO(
+        String serialNumber,
+        RenovationVO renovation
+) {
+    public DeviceRenovationVO(String serialNumber, Long id, String description, LocalDate renovationDate) {
+        this(serialNumber, new RenovationVO(id, description, renovationDate));
+    }
+}
@@ -0,0 +1,13 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.util.List;
+
+public record DeviceStatisticsVO(
+        long devices,
+        long registered,
+        long anonymous,
+        long inWarranty,
+        long outOfWarranty,
+        List<PassportStatisticsVO> passports
+) {
+}
@@ -0,0 +1,33 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.models.entities.Device;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Read projection of a device. Renovations are null unless they were explicitly requested.
+ */
+public record DeviceVO(
+        String serialNumber,
+        LocalDate purchaseDate,
+        LocalDate warrantyExpirationDate,
+        String comment,
+        PassportForSerialNumberVO passport,
+        List<RenovationVO> renovations
+) {
+    public DeviceVO(String serialNumber, LocalDate purchaseDate, LocalDate warrantyExpirationDate, String comment,
+                    Long passportId, String passportName, String passportModel) {
+        this(serialNumber, purchaseDate, warrantyExpirationDate, comment,
+                passportId == null ? null : new PassportForSerialNumberVO(passportId, passportName, passportModel), null);
+    }
+
+    public DeviceVO(Device device) {
+        this(device.getSerialNumber(), device.getPurchaseDate(), device.getWarrantyExpirationDate(), device.getComment(),
+                device.getPassport() == null ? null : new PassportForSerialNumberVO(device.getPassport()), null);
+    }
+
+    public DeviceVO withRenovations(List<RenovationVO> renovations) {
+        return new DeviceVO(serialNumber, purchaseDate, warrantyExpirationDate, comment, passport, renovations);
+    }
+}
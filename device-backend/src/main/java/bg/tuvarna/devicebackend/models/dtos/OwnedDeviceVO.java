@@ -0,0 +1,16 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.time.LocalDate;
+
+/**
+ * A device projection together with its owner id, used to attach devices to a page of users.
+ */
+public record OwnedDeviceVO(
+        Long userId,
+        DeviceVO device
+) {
+    public OwnedDeviceVO(Long userId, String serialNumber, LocalDate purchaseDate, LocalDate warrantyExpirationDate, String comment,
+                         Long passportId, String passportName, String passportModel) {
+        this(userId, new DeviceVO(serialNumber, purchaseDate, warrantyExpirationDate, comment, passportId, passportName, passportModel));
+    }
+}
@@ -0,0 +1,10 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.util.List;
+
+public record PassportImportResultVO(
+        int imported,
+        int failed,
+        List<PassportImportErrorVO> errors
+) {
+}
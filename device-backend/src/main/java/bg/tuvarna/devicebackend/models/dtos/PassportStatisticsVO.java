@@ -0,0 +1,11 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+public record PassportStatisticsVO(
+        Long passportId,
+        String name,
+        String model,
+        long devices,
+        long registered,
+        long inWarranty
+) {
+}
@@ -6,7 +6,7 @@ public record PassportVO(
         String model,
         String serialPrefix,
         int warrantyMonths,
-        int fromSerialNumber,
-        int toSerialNumber
+        long fromSerialNumber,
+        long toSerialNumber
 ) {
 }
\ No newline at end of file
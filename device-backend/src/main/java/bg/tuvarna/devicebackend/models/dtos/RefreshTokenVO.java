@@ -0,0 +1,4 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+public record RefreshTokenVO(String refreshToken) {
+}
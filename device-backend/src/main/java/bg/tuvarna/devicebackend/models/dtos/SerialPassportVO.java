@@ -0,0 +1,8 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+public record SerialPassportVO(
+        String serialId,
+        boolean found,
+        PassportForSerialNumberVO passport
+) {
+}
@@ -0,0 +1,29 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A device as returned in the user payloads of login, refresh and /getUser. It keeps the full passport
+ * (serial range and warranty months included), which clients of those endpoints have always received.
+ */
+public record UserDeviceVO(
+        String serialNumber,
+        LocalDate purchaseDate,
+        LocalDate warrantyExpirationDate,
+        String comment,
+        Passport passport,
+        List<RenovationVO> renovations
+) {
+    public UserDeviceVO(Device device) {
+        this(device.getSerialNumber(), device.getPurchaseDate(), device.getWarrantyExpirationDate(), device.getComment(),
+                device.getPassport(), List.of());
+    }
+
+    public UserDeviceVO withRenovations(List<RenovationVO> renovations) {
+        return new UserDeviceVO(serialNumber, purchaseDate, warrantyExpirationDate, comment, passport, renovations);
+    }
+}
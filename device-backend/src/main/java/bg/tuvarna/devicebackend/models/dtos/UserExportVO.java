@@ -0,0 +1,13 @@
+package bg.tuvarna.devicebackend.models.dtos;
+
+import java.util.List;
+
+public record UserExportVO(
+        Long id,
+        String fullName,
+        String address,
+        String phone,
+        String email,
+        List<String> deviceSerialNumbers
+) {
+}
@@ -1,8 +1,5 @@
 package bg.tuvarna.devicebackend.models.dtos;
 
-import bg.tuvarna.devicebackend.models.entities.Device;
-import bg.tuvarna.devicebackend.models.entities.User;
-
 import java.util.List;
 
 public record UserListing(
@@ -11,9 +8,13 @@ public record UserListing(
         String address,
         String phone,
         String email,
-        List<Device> devices
+        List<DeviceVO> devices
 ) {
-    public UserListing (User user){
-        this(user.getId(), user.getFullName(), user.getAddress(), user.getPhone(), user.getEmail(), user.getDevices());
+    public UserListing(Long id, String fullName, String address, String phone, String email) {
+        this(id, fullName, address, phone, email, List.of());
+    }
+
+    public UserListing withDevices(List<DeviceVO> devices) {
+        return new UserListing(id, fullName, address, phone, email, devices);
     }
-}
\ No newline at end of file
+}
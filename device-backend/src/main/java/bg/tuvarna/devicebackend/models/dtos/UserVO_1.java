@@ -1,6 +1,5 @@
 package bg.tuvarna.devicebackend.models.dtos;
 
-import bg.tuvarna.devicebackend.models.entities.Device;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
 
@@ -13,9 +12,14 @@ public record UserVO(
         String phone,
         String email,
         UserRole role,
-        List<Device> devices
+        List<UserDeviceVO> devices
 ) {
     public UserVO(User user){
-        this(user.getId(), user.getFullName(), user.getAddress(), user.getPhone(), user.getEmail(), user.getRole(), user.getDevices());
+        this(user.getId(), user.getFullName(), user.getAddress(), user.getPhone(), user.getEmail(), user.getRole(),
+                user.getDevices().stream().map(UserDeviceVO::new).toList());
+    }
+
+    public UserVO withDevices(List<UserDeviceVO> devices) {
+        return new UserVO(id, fullName, address, phone, email, role, devices);
     }
 }
\ No newline at end of file
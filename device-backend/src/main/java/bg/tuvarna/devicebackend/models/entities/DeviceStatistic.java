@@ -0,0 +1,36 @@
+package bg.tuvarna.devicebackend.models.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated device count per passport, owner state and warranty expiration date.
+ * Keeping the expiration date in the key lets "in warranty" be answered for any day
+ * without touching the devices table.
+ */
+@Entity
+@Table(name = "device_statistics", schema = "public")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceStatistic {
+    @EmbeddedId
+    private Key id;
+    private long deviceCount;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Key implements Serializable {
+        private Long passportId;
+        private boolean registered;
+        private LocalDate warrantyExpirationDate;
+    }
+}
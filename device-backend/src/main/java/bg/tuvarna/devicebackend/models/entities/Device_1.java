@@ -1,5 +1,6 @@
 package bg.tuvarna.devicebackend.models.entities;
 
+import bg.tuvarna.devicebackend.indexes.DeviceFilterListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -10,10 +11,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "devices", schema = "public")
+@Table(name = "devices", schema = "public",
+        indexes = @Index(name = "devices_warranty_expiration_date_idx", columnList = "warrantyExpirationDate"))
 @Getter
 @Setter
+@EntityListeners(DeviceFilterListener.class)
 public class Device {
+    public static final String USER_CONSTRAINT = "devices_user_id_fkey";
+
     @Id
     @Column(name = "serialNumber", nullable = false)
     private String serialNumber;
@@ -22,7 +27,7 @@ public class Device {
     private String comment;
 
     @ManyToOne
-    @JoinColumn(name = "user_id")
+    @JoinColumn(name = "user_id", foreignKey = @ForeignKey(name = Device.USER_CONSTRAINT))
     @JsonIgnore
     private User user;
 
@@ -30,7 +35,7 @@ public class Device {
     @JoinColumn(name = "passport_id")
     private Passport passport;
 
-    @OneToMany(mappedBy = "device", orphanRemoval = true, cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "device", orphanRemoval = true, cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Renovation> renovations = new ArrayList<>();
 
 }
\ No newline at end of file
@@ -1,16 +1,20 @@
 package bg.tuvarna.devicebackend.models.entities;
 
+import bg.tuvarna.devicebackend.indexes.PassportIndexListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
 @Table(name = "passports", schema = "public")
+@EntityListeners(PassportIndexListener.class)
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Passport {
+    public static final String SERIAL_RANGE_CONSTRAINT = "passports_serial_range_excl";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id", nullable = false)
@@ -18,7 +22,7 @@ public class Passport {
     private String name;
     private String model;
     private String serialPrefix;
-    private int fromSerialNumber;
-    private int toSerialNumber;
+    private long fromSerialNumber;
+    private long toSerialNumber;
     private int warrantyMonths;
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package bg.tuvarna.devicebackend.models.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Server-side record of an opaque refresh token. Only the SHA-256 hash of the token is stored.
+ * Every refresh rotates the token and the new one joins the same family, so reuse of a rotated
+ * token revokes the whole family.
+ */
+@Entity
+@Table(name = "refresh_tokens", schema = "public",
+        indexes = {
+                @Index(name = "refresh_tokens_token_hash_idx", columnList = "tokenHash", unique = true),
+                @Index(name = "refresh_tokens_family_id_idx", columnList = "familyId"),
+                @Index(name = "refresh_tokens_user_id_idx", columnList = "userId")
+        })
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RefreshToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(nullable = false)
+    private String tokenHash;
+    @Column(nullable = false)
+    private Long userId;
+    @Column(nullable = false)
+    private String familyId;
+    @Column(nullable = false)
+    private Instant expiresAt;
+    private boolean rotated;
+    private boolean revoked;
+}
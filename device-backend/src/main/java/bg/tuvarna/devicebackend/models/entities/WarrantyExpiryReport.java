@@ -0,0 +1,39 @@
+package bg.tuvarna.devicebackend.models.entities;
+
+import bg.tuvarna.devicebackend.models.enums.ReportDimension;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * One row of the daily expiring-warranty report: how many devices of a passport or of an owner
+ * have a warranty expiring from reportDate up to, not including, windowEnd.
+ * The unique key keeps nodes that build the same report at the same time from writing it twice.
+ */
+@Entity
+@Table(name = "warranty_expiry_reports", schema = "public",
+        indexes = @Index(name = "warranty_expiry_reports_report_date_idx", columnList = "reportDate"),
+        uniqueConstraints = @UniqueConstraint(name = WarrantyExpiryReport.REPORT_KEY_CONSTRAINT,
+                columnNames = {"reportDate", "dimension", "dimensionId"}))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class WarrantyExpiryReport {
+    public static final String REPORT_KEY_CONSTRAINT = "warranty_expiry_reports_key";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    private LocalDate reportDate;
+    private LocalDate windowEnd;
+    @Enumerated(EnumType.STRING)
+    private ReportDimension dimension;
+    private Long dimensionId;
+    private String label;
+    private long deviceCount;
+}
@@ -0,0 +1,5 @@
+package bg.tuvarna.devicebackend.models.enums;
+
+public enum ReportDimension {
+    PASSPORT, OWNER
+}
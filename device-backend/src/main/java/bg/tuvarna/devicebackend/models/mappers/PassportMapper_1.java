@@ -23,4 +23,16 @@ public class PassportMapper {
         passport.setFromSerialNumber(passportVO.fromSerialNumber());
         passport.setToSerialNumber(passportVO.toSerialNumber());
     }
+
+    public static Passport copy(Passport passport) {
+        return Passport.builder()
+                .id(passport.getId())
+                .name(passport.getName())
+                .model(passport.getModel())
+                .serialPrefix(passport.getSerialPrefix())
+                .warrantyMonths(passport.getWarrantyMonths())
+                .fromSerialNumber(passport.getFromSerialNumber())
+                .toSerialNumber(passport.getToSerialNumber())
+                .build();
+    }
 }
\ No newline at end of file
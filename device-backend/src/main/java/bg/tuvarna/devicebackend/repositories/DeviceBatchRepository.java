@@ -0,0 +1,56 @@
+package bg.tuvarna.devicebackend.repositories;
+
+import bg.tuvarna.devicebackend.models.entities.Device;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * JDBC writes for devices. Device ids are assigned, so a JPA save would select
+ * every row before inserting it; plain inserts skip that round-trip.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeviceBatchRepository {
+    private static final String INSERT_SQL = "insert into devices " +
+            "(serial_number, purchase_date, warranty_expiration_date, user_id, passport_id) " +
+            "values (:serialNumber, :purchaseDate, :warrantyExpirationDate, :userId, :passportId)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return false when the serial number is already registered
+     */
+    public boolean insert(Device device) {
+        try {
+            jdbcTemplate.update(INSERT_SQL, toParams(device));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Transactional
+    public void insertAll(List<Device> devices) {
+        SqlParameterSource[] params = devices.stream()
+                .map(DeviceBatchRepository::toParams)
+                .toArray(SqlParameterSource[]::new);
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, params);
+    }
+
+    private static SqlParameterSource toParams(Device device) {
+        return new MapSqlParameterSource()
+                .addValue("serialNumber", device.getSerialNumber())
+                .addValue("purchaseDate", device.getPurchaseDate())
+                .addValue("warrantyExpirationDate", device.getWarrantyExpirationDate())
+                .addValue("userId", device.getUser() == null ? null : device.getUser().getId())
+                .addValue("passportId", device.getPassport().getId());
+    }
+}
@@ -1,7 +1,8 @@
 package bg.tuvarna.devicebackend.repositories;
 
+import bg.tuvarna.devicebackend.models.dtos.DeviceVO;
+import bg.tuvarna.devicebackend.models.dtos.OwnedDeviceVO;
 import bg.tuvarna.devicebackend.models.entities.Device;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,27 +10,102 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface DeviceRepository extends JpaRepository<Device, String> {
+    String VIEW = "select new bg.tuvarna.devicebackend.models.dtos.DeviceVO(" +
+            "d.serialNumber, d.purchaseDate, d.warrantyExpirationDate, d.comment, p.id, p.name, p.model) ";
+
+    String SEARCH_FILTER = "(?1 is null OR (lower(d.serialNumber) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.fullName) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.address) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.email) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.phone) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(p.name) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(p.model) LIKE concat('%',lower(?1),'%')))";
+    String TRIGRAM_SEARCH_MATCHES = "select d.serial_number, similarity(lower(d.serial_number), :searchBy) as score from devices d " +
+            "where lower(d.serial_number) like :pattern " +
+            "union all " +
+            "select d.serial_number, greatest(similarity(lower(u.full_name), :searchBy), similarity(lower(u.address), :searchBy), " +
+            "similarity(lower(u.email), :searchBy), similarity(lower(u.phone), :searchBy)) from users u " +
+            "join devices d on d.user_id = u.id " +
+            "where lower(u.full_name) like :pattern or lower(u.address) like :pattern or " +
+            "lower(u.email) like :pattern or lower(u.phone) like :pattern " +
+            "union all " +
+            "select d.serial_number, greatest(similarity(lower(p.name), :searchBy), similarity(lower(p.model), :searchBy)) from passports p " +
+            "join devices d on d.passport_id = p.id " +
+            "where lower(p.name) like :pattern or lower(p.model) like :pattern";
+
     @Transactional
     @Modifying
     @Query("delete from Device d where d.serialNumber = ?1")
     void deleteBySerialNumber(String serialNumber);
 
-    @Query("select distinct d from Device d " +
+    @Query(VIEW + "from Device d " +
             "left join d.user u " +
             "left join d.passport p " +
-            "where (?1 is null OR ( ?1 is not null AND (lower(d.serialNumber) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.fullName) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.address) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.email) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.phone) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.name) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.model) LIKE concat('%',lower(?1),'%'))))")
-    Page<Device> findAll(String searchBy, Pageable pageable);
+            "where " + SEARCH_FILTER + " " +
+            "order by d.serialNumber")
+    List<DeviceVO> findAll(String searchBy, Pageable pageable);
+
+    @Query("select count(d) from Device d " +
+            "left join d.user u " +
+            "left join d.passport p " +
+            "where " + SEARCH_FILTER)
+    long countBySearch(String searchBy);
+
+    @Query(VIEW + "from Device d " +
+            "left join d.passport p " +
+            "order by d.serialNumber")
+    List<DeviceVO> getAllDevices(Pageable pageable);
+
+    @Query(VIEW + "from Device d " +
+            "left join d.passport p " +
+            "where d.warrantyExpirationDate between ?1 and ?2 " +
+            "order by d.warrantyExpirationDate, d.serialNumber")
+    List<DeviceVO> findWarrantiesExpiring(LocalDate from, LocalDate to, Pageable pageable);
+
+    @Query("select count(d) from Device d where d.warrantyExpirationDate between ?1 and ?2")
+    long countWarrantiesExpiring(LocalDate from, LocalDate to);
+
+    @Query("select new bg.tuvarna.devicebackend.models.dtos.OwnedDeviceVO(" +
+            "d.user.id, d.serialNumber, d.purchaseDate, d.warrantyExpirationDate, d.comment, p.id, p.name, p.model) " +
+            "from Device d " +
+            "left join d.passport p " +
+            "where d.user.id in ?1 AND (?2 is null OR d.serialNumber LIKE concat('%', ?2, '%') ESCAPE '\\') " +
+            "order by d.serialNumber")
+    List<OwnedDeviceVO> findViewsByOwners(Collection<Long> userIds, String serialNumberPart);
 
-    @Query("select distinct d from Device d " +
+    @Query("select d.serialNumber from Device d where d.serialNumber in ?1")
+    List<String> findExistingSerialNumbers(Collection<String> serialNumbers);
+
+    @Query(VIEW + "from Device d " +
+            "left join d.passport p " +
+            "where d.serialNumber in ?1")
+    List<DeviceVO> findViews(Collection<String> serialNumbers);
+
+    @Query(value = "select m.serial_number from (" + TRIGRAM_SEARCH_MATCHES + ") m " +
+            "group by m.serial_number " +
+            "order by max(m.score) desc, m.serial_number " +
+            "limit :limit offset :offset", nativeQuery = true)
+    List<String> searchRankedSerialNumbers(String searchBy, String pattern, int limit, long offset);
+
+    @Query(value = "select count(distinct m.serial_number) from (" + TRIGRAM_SEARCH_MATCHES + ") m", nativeQuery = true)
+    long countTrigramSearchMatches(String searchBy, String pattern);
+
+    @Query(VIEW + "from Device d " +
             "left join d.user u " +
-            "left join d.passport p ")
-    Page<Device> getAllDevices(Pageable pageable);
+            "left join d.passport p " +
+            "where d.serialNumber > ?2 AND " + SEARCH_FILTER + " " +
+            "order by d.serialNumber")
+    List<DeviceVO> findAllAfter(String searchBy, String afterSerialNumber, Pageable pageable);
+
+    @Query(value = "select distinct m.serial_number from (" + TRIGRAM_SEARCH_MATCHES + ") m " +
+            "where m.serial_number > :afterSerialNumber " +
+            "order by m.serial_number " +
+            "limit :limit", nativeQuery = true)
+    List<String> searchSerialNumbersAfter(String searchBy, String pattern, String afterSerialNumber, int limit);
 }
\ No newline at end of file
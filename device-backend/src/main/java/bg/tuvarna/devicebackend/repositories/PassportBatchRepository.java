@@ -0,0 +1,43 @@
+package bg.tuvarna.devicebackend.repositories;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writes for passports. Hibernate can't batch inserts of IDENTITY entities,
+ * so bulk imports go through here and bypass the JPA entity listeners.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PassportBatchRepository {
+    private static final String INSERT_SQL = "insert into passports " +
+            "(name, model, serial_prefix, warranty_months, from_serial_number, to_serial_number) " +
+            "values (:name, :model, :serialPrefix, :warrantyMonths, :fromSerialNumber, :toSerialNumber)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void insertAll(List<Passport> passports) {
+        SqlParameterSource[] params = passports.stream()
+                .map(BeanPropertySqlParameterSource::new)
+                .toArray(SqlParameterSource[]::new);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, params, keyHolder, new String[]{"id"});
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < passports.size(); i++) {
+            passports.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+}
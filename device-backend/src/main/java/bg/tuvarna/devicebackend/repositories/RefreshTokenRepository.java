@@ -0,0 +1,32 @@
+package bg.tuvarna.devicebackend.repositories;
+
+import bg.tuvarna.devicebackend.models.entities.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // conditional, so of two concurrent refreshes with the same token only one rotates it
+    @Modifying
+    @Query("update RefreshToken t set t.rotated = true where t.id = ?1 and t.rotated = false and t.revoked = false")
+    int markRotated(Long id);
+
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.familyId = ?1")
+    int revokeFamily(String familyId);
+
+    @Modifying
+    @Query("update RefreshToken t set t.revoked = true where t.userId = ?1 and t.revoked = false")
+    int revokeAllForUser(Long userId);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt < ?1")
+    int deleteExpired(Instant now);
+}
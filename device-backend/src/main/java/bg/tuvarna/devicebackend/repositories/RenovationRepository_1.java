@@ -1,9 +1,22 @@
 package bg.tuvarna.devicebackend.repositories;
 
+import bg.tuvarna.devicebackend.models.dtos.DeviceRenovationVO;
+import bg.tuvarna.devicebackend.models.dtos.RenovationVO;
 import bg.tuvarna.devicebackend.models.entities.Renovation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RenovationRepository extends JpaRepository<Renovation, Long> {
-}
\ No newline at end of file
+    @Query("select new bg.tuvarna.devicebackend.models.dtos.RenovationVO(r.id, r.description, r.renovationDate) " +
+            "from Renovation r where r.device.serialNumber = ?1 order by r.renovationDate")
+    List<RenovationVO> findViewsByDevice(String serialNumber);
+
+    @Query("select new bg.tuvarna.devicebackend.models.dtos.DeviceRenovationVO(r.device.serialNumber, r.id, r.description, r.renovationDate) " +
+            "from Renovation r where r.device.serialNumber in ?1 order by r.renovationDate")
+    List<DeviceRenovationVO> findViewsByDevices(Collection<String> serialNumbers);
+}
@@ -1,16 +1,28 @@
 package bg.tuvarna.devicebackend.repositories;
 
+import bg.tuvarna.devicebackend.models.dtos.UserListing;
 import bg.tuvarna.devicebackend.models.entities.User;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    String SEARCH_FILTER = "(?1 is null OR (lower(u.fullName) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.address) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.email) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(u.phone) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(p.name) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(p.model) LIKE concat('%',lower(?1),'%') OR " +
+            "lower(d.serialNumber) LIKE concat('%',lower(?1),'%')))";
+
     User getByEmail(String email);
 
     @Query("select u from User u where u.email = ?1 OR u.phone = ?1")
@@ -19,20 +31,46 @@ public interface UserRepository extends JpaRepository<User, Long> {
     User getByPhone(String phone);
 
     @Query("select distinct u from User u " +
+            "left join fetch u.devices d " +
+            "left join fetch d.passport " +
+            "where u.email = ?1 OR u.phone = ?1")
+    Optional<User> findForLogin(String username);
+
+    @Query("select distinct u from User u " +
+            "left join fetch u.devices d " +
+            "left join fetch d.passport " +
+            "where u.id = ?1")
+    Optional<User> findForRefresh(Long id);
+
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = ?2 where u.id = ?1")
+    int updatePassword(Long id, String password);
+
+    @Query("select u.id from User u where u.id in ?1")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    @Query("select distinct u.id from User u " +
             "left join u.devices d " +
             "left join d.passport p " +
-            "where u.role!='ADMIN' AND (?1 is null OR ( ?1 is not null AND lower(u.fullName) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.address) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.email) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(u.phone) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.name) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(p.model) LIKE concat('%',lower(?1),'%') OR " +
-            "lower(d.serialNumber) LIKE concat('%',lower(?1),'%')))")
-    Page<User> searchBy(String searchBy, Pageable pageable);
+            "where u.role!='ADMIN' AND u.id > ?2 AND " + SEARCH_FILTER + " " +
+            "order by u.id")
+    List<Long> findIdsAfter(String searchBy, Long afterId, Pageable pageable);
 
-    @Query("select distinct u from User u " +
+    @Query("select distinct u.id from User u " +
+            "left join u.devices d " +
+            "left join d.passport p " +
+            "where u.role!='ADMIN' AND " + SEARCH_FILTER + " " +
+            "order by u.id")
+    List<Long> searchPageIds(String searchBy, Pageable pageable);
+
+    @Query("select new bg.tuvarna.devicebackend.models.dtos.UserListing(u.id, u.fullName, u.address, u.phone, u.email) " +
+            "from User u where u.id in ?1")
+    List<UserListing> findListings(Collection<Long> ids);
+
+    @Query("select count(distinct u) from User u " +
             "left join u.devices d " +
             "left join d.passport p " +
-            "where u.role!='ADMIN'")
-    Page<User> getAllUsers(Pageable pageable);
+            "where u.role!='ADMIN' AND " + SEARCH_FILTER)
+    long countBySearch(String searchBy);
 }
\ No newline at end of file
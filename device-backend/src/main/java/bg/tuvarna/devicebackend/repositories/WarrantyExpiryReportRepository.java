@@ -0,0 +1,23 @@
+package bg.tuvarna.devicebackend.repositories;
+
+import bg.tuvarna.devicebackend.models.entities.WarrantyExpiryReport;
+import bg.tuvarna.devicebackend.models.enums.ReportDimension;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface WarrantyExpiryReportRepository extends JpaRepository<WarrantyExpiryReport, Long> {
+    @Query("select max(r.reportDate) from WarrantyExpiryReport r")
+    LocalDate findLatestReportDate();
+
+    List<WarrantyExpiryReport> findByReportDateAndDimensionOrderByDeviceCountDesc(LocalDate reportDate, ReportDimension dimension);
+
+    @Modifying
+    @Query("delete from WarrantyExpiryReport r where r.reportDate = ?1")
+    void deleteByReportDate(LocalDate reportDate);
+}
@@ -0,0 +1,205 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.dtos.DeviceExportVO;
+import bg.tuvarna.devicebackend.models.dtos.UserExportVO;
+import bg.tuvarna.devicebackend.utils.ExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams devices and users from a forward-only JDBC cursor straight to the response.
+ * Postgres only honours the fetch size inside a transaction, hence the read-only transactions.
+ * Rows are written as they are read, so memory stays constant regardless of the table size.
+ */
+@Service
+@RequiredArgsConstructor
+public class DataExportService {
+    private static final String DEVICES_SQL = "select d.serial_number, d.purchase_date, d.warranty_expiration_date, d.comment, " +
+            "p.name, p.model, u.id, u.email " +
+            "from devices d " +
+            "left join passports p on p.id = d.passport_id " +
+            "left join users u on u.id = d.user_id";
+    // ordered by id so the devices of one user arrive together and can be grouped while streaming
+    private static final String USERS_SQL = "select u.id, u.full_name, u.address, u.phone, u.email, d.serial_number " +
+            "from users u " +
+            "left join devices d on d.user_id = u.id " +
+            "where u.role <> 'ADMIN' " +
+            "order by u.id";
+    private static final String DEVICES_CSV_HEADER = "serialNumber,purchaseDate,warrantyExpirationDate,comment,passportName,passportModel,ownerId,ownerEmail";
+    private static final String USERS_CSV_HEADER = "id,fullName,address,phone,email,deviceSerialNumbers";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Transactional(readOnly = true)
+    public void exportDevices(ExportFormat format, OutputStream outputStream) throws IOException {
+        try (RowWriter writer = new RowWriter(format, outputStream, DEVICES_CSV_HEADER)) {
+            cursor().query(DEVICES_SQL, rs -> {
+                DeviceExportVO device = new DeviceExportVO(
+                        rs.getString(1),
+                        toLocalDate(rs.getDate(2)),
+                        toLocalDate(rs.getDate(3)),
+                        rs.getString(4),
+                        rs.getString(5),
+                        rs.getString(6),
+                        getLong(rs, 7),
+                        rs.getString(8)
+                );
+                writer.write(device, device.serialNumber(), device.purchaseDate(), device.warrantyExpirationDate(), device.comment(),
+                        device.passportName(), device.passportModel(), device.ownerId(), device.ownerEmail());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportUsers(ExportFormat format, OutputStream outputStream) throws IOException {
+        try (RowWriter writer = new RowWriter(format, outputStream, USERS_CSV_HEADER)) {
+            UserAccumulator accumulator = new UserAccumulator(writer);
+            cursor().query(USERS_SQL, accumulator::add);
+            accumulator.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private JdbcTemplate cursor() {
+        JdbcTemplate template = new JdbcTemplate(jdbcTemplate.getDataSource());
+        template.setFetchSize(fetchSize);
+        return template;
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+
+    private static Long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static final class UserAccumulator {
+        private final RowWriter writer;
+        private Long id;
+        private String fullName;
+        private String address;
+        private String phone;
+        private String email;
+        private List<String> serialNumbers = new ArrayList<>();
+
+        private UserAccumulator(RowWriter writer) {
+            this.writer = writer;
+        }
+
+        private void add(ResultSet rs) throws SQLException {
+            long rowId = rs.getLong(1);
+            if (id == null || id != rowId) {
+                flush();
+                id = rowId;
+                fullName = rs.getString(2);
+                address = rs.getString(3);
+                phone = rs.getString(4);
+                email = rs.getString(5);
+                serialNumbers = new ArrayList<>();
+            }
+            String serialNumber = rs.getString(6);
+            if (serialNumber != null) {
+                serialNumbers.add(serialNumber);
+            }
+        }
+
+        private void flush() {
+            if (id == null) {
+                return;
+            }
+            UserExportVO user = new UserExportVO(id, fullName, address, phone, email, serialNumbers);
+            writer.write(user, user.id(), user.fullName(), user.address(), user.phone(), user.email(), String.join(";", user.deviceSerialNumbers()));
+        }
+    }
+
+    private final class RowWriter implements AutoCloseable {
+        private final ExportFormat format;
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        private RowWriter(ExportFormat format, OutputStream outputStream, String csvHeader) throws IOException {
+            this.format = format;
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            if (format == ExportFormat.CSV) {
+                this.generator = null;
+                writer.write(csvHeader);
+                writer.write('\n');
+            } else {
+                // flushes per row only hand the JSON to the buffered writer, not to the socket
+                this.generator = objectMapper.getFactory().createGenerator(writer)
+                        .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+            }
+        }
+
+        private void write(Object row, Object... csvValues) {
+            try {
+                if (format == ExportFormat.CSV) {
+                    for (int i = 0; i < csvValues.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writeCsvValue(csvValues[i]);
+                    }
+                } else {
+                    generator.writeObject(row);
+                    generator.flush();
+                }
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeCsvValue(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (generator != null) {
+                generator.close();
+            }
+            writer.flush();
+        }
+    }
+}
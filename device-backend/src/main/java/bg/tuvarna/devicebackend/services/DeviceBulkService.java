@@ -0,0 +1,77 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.DeviceBulkResultVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceBulkRow;
+import bg.tuvarna.devicebackend.models.dtos.DeviceBulkRowResultVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams NDJSON {@link DeviceCreateVO} rows and registers them chunk by chunk, so a pallet
+ * of devices costs a few queries per chunk instead of several per device.
+ */
+@Service
+@AllArgsConstructor
+public class DeviceBulkService {
+    private static final int CHUNK_SIZE = 1000;
+
+    private final DeviceService deviceService;
+    private final ObjectMapper objectMapper;
+
+    public DeviceBulkResultVO registerDevices(InputStream inputStream) {
+        List<DeviceBulkRowResultVO> results = new ArrayList<>();
+        List<DeviceBulkRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        int registered = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    chunk.add(new DeviceBulkRow(lineNumber, parse(line)));
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    results.add(new DeviceBulkRowResultVO(lineNumber, null, false, "Malformed row"));
+                }
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    registered += deviceService.registerChunk(chunk, results);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new CustomException("Failed to read devices", ErrorCode.Failed);
+        }
+
+        if (!chunk.isEmpty()) {
+            registered += deviceService.registerChunk(chunk, results);
+        }
+
+        return new DeviceBulkResultVO(registered, results.size() - registered, results);
+    }
+
+    private DeviceCreateVO parse(String line) throws JsonProcessingException {
+        DeviceCreateVO vo = objectMapper.readValue(line, DeviceCreateVO.class);
+        if (vo.deviceSerialNumber() == null || vo.deviceSerialNumber().isBlank() || vo.purchaseDate() == null) {
+            throw new IllegalArgumentException("Missing values");
+        }
+        return vo;
+    }
+}
@@ -2,21 +2,47 @@ package bg.tuvarna.devicebackend.services;
 
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.indexes.DeviceSerialFilter;
+import bg.tuvarna.devicebackend.indexes.TrigramSearchIndexes;
+import bg.tuvarna.devicebackend.models.dtos.DeviceBulkRow;
+import bg.tuvarna.devicebackend.models.dtos.DeviceBulkRowResultVO;
 import bg.tuvarna.devicebackend.models.dtos.DeviceCreateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceRenovationVO;
 import bg.tuvarna.devicebackend.models.dtos.DeviceUpdateVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceVO;
+import bg.tuvarna.devicebackend.models.dtos.RenovationVO;
+import bg.tuvarna.devicebackend.models.dtos.UserDeviceVO;
+import bg.tuvarna.devicebackend.models.dtos.UserVO;
 import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.DeviceStatistic;
 import bg.tuvarna.devicebackend.models.entities.Passport;
 import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.repositories.DeviceBatchRepository;
 import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import bg.tuvarna.devicebackend.repositories.RenovationRepository;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.utils.ConstraintViolations;
+import bg.tuvarna.devicebackend.utils.CountMode;
 import bg.tuvarna.devicebackend.utils.CustomPage;
+import bg.tuvarna.devicebackend.utils.PageCursor;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
@@ -24,47 +50,103 @@ public class DeviceService {
     private final DeviceRepository deviceRepository;
     private final PassportService passportService;
     private final UserRepository userRepository;
+    private final TrigramSearchIndexes trigramSearchIndexes;
+    private final ListingCounter listingCounter;
+    private final RenovationRepository renovationRepository;
+    private final DeviceBatchRepository deviceBatchRepository;
+    private final DeviceSerialFilter deviceSerialFilter;
+    private final DeviceStatisticsService deviceStatisticsService;
+    private final TransactionTemplate transactionTemplate;
 
     public void registerDevice(String serialId, LocalDate purchaseDate, User user) {
+        Device device;
         try {
             Passport passport = passportService.findPassportBySerialId(serialId);
 
-            Device device = new Device();
+            device = new Device();
             device.setSerialNumber(serialId);
             device.setPassport(passport);
             device.setUser(user);
             device.setPurchaseDate(purchaseDate);
             device.setWarrantyExpirationDate(purchaseDate.plusMonths(passport.getWarrantyMonths()).plusMonths(12));
-
-            deviceRepository.save(device);
         } catch (RuntimeException e) {
             throw new CustomException("Invalid serial number", ErrorCode.Failed);
         }
+
+        insert(device);
+    }
+
+    /**
+     * Inserts without checking first: the primary key rejects a serial that is already registered,
+     * so concurrent registrations of one serial cost one statement each and the loser gets AlreadyExists.
+     * The statistics delta is written in the same transaction as the device.
+     */
+    private void insert(Device device) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!deviceBatchRepository.insert(device))
+                throw new CustomException("Device already registered", ErrorCode.AlreadyExists);
+            deviceStatisticsService.added(device);
+        });
+
+        deviceSerialFilter.add(device.getSerialNumber());
+        listingCounter.invalidate();
     }
 
     public Device findDevice(String id) {
         return deviceRepository.findById(id).orElse(null);
     }
 
+    public DeviceVO getDeviceView(String id, boolean withRenovations) {
+        List<DeviceVO> views = deviceRepository.findViews(List.of(id));
+        if (views.isEmpty())
+            throw new CustomException("Device not found", ErrorCode.EntityNotFound);
+
+        DeviceVO device = views.get(0);
+        return withRenovations ? device.withRenovations(renovationRepository.findViewsByDevice(id)) : device;
+    }
+
+    /**
+     * Attaches the renovations of all the user's devices, read in one query instead of one per device.
+     */
+    public UserVO withRenovations(UserVO user) {
+        if (user.devices().isEmpty())
+            return user;
+
+        Map<String, List<RenovationVO>> renovations = renovationRepository
+                .findViewsByDevices(user.devices().stream().map(UserDeviceVO::serialNumber).toList())
+                .stream()
+                .collect(Collectors.groupingBy(DeviceRenovationVO::serialNumber,
+                        Collectors.mapping(DeviceRenovationVO::renovation, Collectors.toList())));
+
+        return user.withDevices(user.devices().stream()
+                .map(device -> device.withRenovations(renovations.getOrDefault(device.serialNumber(), List.of())))
+                .toList());
+    }
+
     public Device isDeviceExists(String id) {
-        if (!deviceRepository.existsById(id))
+        if (!deviceSerialFilter.mightContain(id))
             throw new CustomException("Device not registered", ErrorCode.NotRegistered);
-        return findDevice(id);
+        return deviceRepository.findById(id)
+                .orElseThrow(() -> new CustomException("Device not registered", ErrorCode.NotRegistered));
     }
 
     public void registerNewDevice(DeviceCreateVO deviceCreateVO) {
-        alreadyExist(deviceCreateVO.deviceSerialNumber());
-        User user = userRepository.findById(deviceCreateVO.userId()).orElseThrow(() -> new CustomException("User not found", ErrorCode.EntityNotFound));
-        registerDevice(deviceCreateVO.deviceSerialNumber(), deviceCreateVO.purchaseDate(), user);
-    }
+        if (deviceCreateVO.userId() == null)
+            throw new CustomException("User not found", ErrorCode.EntityNotFound);
 
-    public void alreadyExist(String serialNumber) {
-        if (findDevice(serialNumber) != null)
-            throw new CustomException("Device already registered", ErrorCode.AlreadyExists);
+        // the user_id foreign key replaces loading the user
+        try {
+            registerDevice(deviceCreateVO.deviceSerialNumber(), deviceCreateVO.purchaseDate(), User.builder().id(deviceCreateVO.userId()).build());
+        } catch (DataIntegrityViolationException e) {
+            if (ConstraintViolations.isViolated(e, Device.USER_CONSTRAINT))
+                throw new CustomException("User not found", ErrorCode.EntityNotFound);
+            throw e;
+        }
     }
 
     public void updateDevice(DeviceUpdateVO device) {
         Device deviceToUpdate = deviceRepository.findById(device.serialNumber()).orElseThrow(() -> new CustomException("Device not found", ErrorCode.EntityNotFound));
+        DeviceStatistic.Key previous = DeviceStatisticsService.keyOf(deviceToUpdate);
         deviceToUpdate.setPurchaseDate(device.purchaseDate());
         if (deviceToUpdate.getUser() == null)
             deviceToUpdate.setWarrantyExpirationDate(device.purchaseDate().plusMonths(deviceToUpdate.getPassport().getWarrantyMonths()));
@@ -74,48 +156,185 @@ public class DeviceService {
         deviceToUpdate.setComment(device.comment());
 
         deviceRepository.save(deviceToUpdate);
+        deviceStatisticsService.moved(previous, DeviceStatisticsService.keyOf(deviceToUpdate));
     }
 
     @Transactional
     public void deleteDevice(String serialNumber) {
         try {
+            Optional<DeviceStatistic.Key> key = deviceStatisticsService.findKey(serialNumber);
             deviceRepository.deleteBySerialNumber(serialNumber);
+            key.ifPresent(deviceStatisticsService::removed);
+            deviceSerialFilter.remove(serialNumber);
+            listingCounter.invalidate();
         } catch (RuntimeException e) {
             throw new CustomException("Renovations exits", ErrorCode.Failed);
         }
     }
 
     public void addAnonymousDevice(DeviceCreateVO device) {
-        alreadyExist(device.deviceSerialNumber());
+        Device deviceToAdd;
         try {
             Passport passport = passportService.findPassportBySerialId(device.deviceSerialNumber());
 
-            Device deviceToAdd = new Device();
+            deviceToAdd = new Device();
             deviceToAdd.setSerialNumber(device.deviceSerialNumber());
             deviceToAdd.setPurchaseDate(device.purchaseDate());
             deviceToAdd.setPassport(passport);
             deviceToAdd.setWarrantyExpirationDate(device.purchaseDate().plusMonths(passport.getWarrantyMonths()));
-            deviceRepository.save(deviceToAdd);
         } catch (RuntimeException e) {
             throw new CustomException("Invalid serial number", ErrorCode.Failed);
         }
+
+        insert(deviceToAdd);
     }
 
-    public CustomPage<Device> getDevices(String searchBy, int page, int size) {
-        Page<Device> devicePage;
+    /**
+     * Registers one chunk of bulk rows with a constant number of queries: passports come from the
+     * serial index, existing devices and users are checked with one IN-query each, and the new devices
+     * are written in a single JDBC batch. Every row gets a result.
+     */
+    public int registerChunk(List<DeviceBulkRow> rows, List<DeviceBulkRowResultVO> results) {
+        List<String> serialNumbers = rows.stream().map(row -> row.device().deviceSerialNumber()).toList();
+        Set<String> taken = new HashSet<>(deviceRepository.findExistingSerialNumbers(serialNumbers));
+        Set<Long> userIds = rows.stream()
+                .map(row -> row.device().userId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!userIds.isEmpty())
+            userIds = new HashSet<>(userRepository.findExistingIds(userIds));
+        Map<String, Passport> passports = passportService.resolvePassports(serialNumbers);
+
+        List<Device> devices = new ArrayList<>(rows.size());
+        List<DeviceBulkRow> accepted = new ArrayList<>(rows.size());
+        for (DeviceBulkRow row : rows) {
+            DeviceCreateVO vo = row.device();
+            Passport passport = passports.get(vo.deviceSerialNumber());
+            String error = null;
+            if (!taken.add(vo.deviceSerialNumber()))
+                error = "Device already registered";
+            else if (vo.userId() != null && !userIds.contains(vo.userId()))
+                error = "User not found";
+            else if (passport == null)
+                error = "Invalid serial number";
+
+            if (error != null) {
+                results.add(new DeviceBulkRowResultVO(row.line(), vo.deviceSerialNumber(), false, error));
+                continue;
+            }
+
+            Device device = new Device();
+            device.setSerialNumber(vo.deviceSerialNumber());
+            device.setPassport(passport);
+            device.setPurchaseDate(vo.purchaseDate());
+            if (vo.userId() == null) {
+                device.setWarrantyExpirationDate(vo.purchaseDate().plusMonths(passport.getWarrantyMonths()));
+            } else {
+                device.setUser(User.builder().id(vo.userId()).build());
+                device.setWarrantyExpirationDate(vo.purchaseDate().plusMonths(passport.getWarrantyMonths()).plusMonths(12));
+            }
+            devices.add(device);
+            accepted.add(row);
+        }
+
+        if (devices.isEmpty()) {
+            return 0;
+        }
+
+        // devices and their statistics commit together, so a failure here means nothing was saved
+        boolean saved;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                deviceBatchRepository.insertAll(devices);
+                deviceStatisticsService.addedAll(devices);
+            });
+            saved = true;
+        } catch (RuntimeException e) {
+            saved = false;
+        }
+        if (saved) {
+            devices.forEach(device -> deviceSerialFilter.add(device.getSerialNumber()));
+            listingCounter.invalidate();
+        }
+        for (DeviceBulkRow row : accepted) {
+            results.add(new DeviceBulkRowResultVO(row.line(), row.device().deviceSerialNumber(), saved, saved ? null : "Failed to save device"));
+        }
+        return saved ? devices.size() : 0;
+    }
+
+    public CustomPage<DeviceVO> getDevices(String searchBy, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page - 1, size);
+        List<DeviceVO> devices;
+        LongSupplier exactCount;
         if (searchBy == null) {
-            devicePage = deviceRepository.getAllDevices(PageRequest.of(page - 1, size));
+            devices = deviceRepository.getAllDevices(pageRequest);
+            exactCount = deviceRepository::count;
+        } else if (trigramSearchIndexes.isEnabled()) {
+            String query = searchBy.toLowerCase();
+            String pattern = "%" + query + "%";
+            devices = findAllInOrder(deviceRepository.searchRankedSerialNumbers(query, pattern, size, pageRequest.getOffset()));
+            exactCount = () -> deviceRepository.countTrigramSearchMatches(query, pattern);
         } else {
-            devicePage = deviceRepository.findAll(searchBy, PageRequest.of(page - 1, size));
+            devices = deviceRepository.findAll(searchBy, pageRequest);
+            exactCount = () -> deviceRepository.countBySearch(searchBy);
         }
 
-        CustomPage<Device> customPage = new CustomPage<>();
-        customPage.setItems(devicePage.getContent());
-        customPage.setTotalItems(devicePage.getTotalElements());
-        customPage.setTotalPages(devicePage.getTotalPages());
+        CustomPage<DeviceVO> customPage = new CustomPage<>();
+        customPage.setItems(devices);
+        customPage.setCurrentPage(page);
+        customPage.setSize(size);
+        listingCounter.fillTotals(customPage, "devices", searchBy, exactCount);
+
+        return customPage;
+    }
+
+    public CustomPage<DeviceVO> getExpiringWarranties(LocalDate from, LocalDate to, int page, int size) {
+        if (from.isAfter(to))
+            throw new CustomException("Invalid date range", ErrorCode.Validation);
+
+        PageRequest pageRequest = PageRequest.of(page - 1, size);
+        long total = deviceRepository.countWarrantiesExpiring(from, to);
+
+        CustomPage<DeviceVO> customPage = new CustomPage<>();
+        customPage.setItems(deviceRepository.findWarrantiesExpiring(from, to, pageRequest));
         customPage.setCurrentPage(page);
         customPage.setSize(size);
+        customPage.setTotalItems(total);
+        customPage.setTotalPages((int) ((total + size - 1) / size));
+        customPage.setCountMode(CountMode.EXACT);
 
         return customPage;
     }
+
+    public CustomPage<DeviceVO> getDevicesAfter(String searchBy, String cursor, int size) {
+        if (size < 1)
+            throw new CustomException("Page size must be positive", ErrorCode.Validation);
+
+        String afterSerialNumber = PageCursor.decode(cursor);
+        List<DeviceVO> devices;
+        if (searchBy != null && trigramSearchIndexes.isEnabled()) {
+            String query = searchBy.toLowerCase();
+            devices = findAllInOrder(deviceRepository.searchSerialNumbersAfter(query, "%" + query + "%", afterSerialNumber, size + 1));
+        } else {
+            devices = deviceRepository.findAllAfter(searchBy, afterSerialNumber, PageRequest.of(0, size + 1));
+        }
+
+        boolean hasNext = devices.size() > size;
+        CustomPage<DeviceVO> customPage = new CustomPage<>();
+        customPage.setItems(hasNext ? devices.subList(0, size) : devices);
+        customPage.setNextCursor(hasNext ? PageCursor.encode(devices.get(size - 1).serialNumber()) : null);
+        customPage.setSize(size);
+
+        return customPage;
+    }
+
+    private List<DeviceVO> findAllInOrder(List<String> serialNumbers) {
+        if (serialNumbers.isEmpty())
+            return List.of();
+
+        Map<String, DeviceVO> devices = deviceRepository.findViews(serialNumbers)
+                .stream()
+                .collect(Collectors.toMap(DeviceVO::serialNumber, Function.identity()));
+        return serialNumbers.stream().map(devices::get).filter(Objects::nonNull).toList();
+    }
 }
\ No newline at end of file
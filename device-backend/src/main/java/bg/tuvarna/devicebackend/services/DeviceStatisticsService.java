@@ -0,0 +1,158 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.dtos.DeviceStatisticsVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportStatisticsVO;
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.DeviceStatistic;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the device_statistics table. DeviceService applies every write as a delta, and a
+ * periodic reconcile recomputes the table from devices to repair drift from writes that bypass it.
+ * Dashboard reads only aggregate device_statistics, whose size depends on passports and dates,
+ * not on the number of devices.
+ */
+@Service
+@RequiredArgsConstructor
+public class DeviceStatisticsService {
+    private static final Logger logger = LoggerFactory.getLogger(DeviceStatisticsService.class);
+    private static final String KEY = "passport_id = ? and registered = ? and warranty_expiration_date = ?";
+    private static final String UPDATE_SQL = "update device_statistics set device_count = device_count + ? where " + KEY;
+    // a failed insert aborts the surrounding transaction on Postgres, so rows are created with a single upsert
+    private static final String POSTGRES_UPSERT_SQL = "insert into device_statistics " +
+            "(device_count, passport_id, registered, warranty_expiration_date) values (?, ?, ?, ?) " +
+            "on conflict (passport_id, registered, warranty_expiration_date) " +
+            "do update set device_count = device_statistics.device_count + excluded.device_count";
+    private static final String MERGE_SQL = "merge into device_statistics s " +
+            "using (select cast(? as bigint) as device_count, cast(? as bigint) as passport_id, " +
+            "cast(? as boolean) as registered, cast(? as date) as warranty_expiration_date) v " +
+            "on s.passport_id = v.passport_id and s.registered = v.registered and s.warranty_expiration_date = v.warranty_expiration_date " +
+            "when matched then update set device_count = s.device_count + v.device_count " +
+            "when not matched then insert (device_count, passport_id, registered, warranty_expiration_date) " +
+            "values (v.device_count, v.passport_id, v.registered, v.warranty_expiration_date)";
+    private static final String PASSPORTS_SQL = "select p.id, p.name, p.model, sum(s.device_count), " +
+            "sum(case when s.registered then s.device_count else 0 end), " +
+            "sum(case when s.warranty_expiration_date >= ? then s.device_count else 0 end) " +
+            "from device_statistics s " +
+            "join passports p on p.id = s.passport_id " +
+            "group by p.id, p.name, p.model " +
+            "order by p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile String upsertSql;
+
+    public void added(Device device) {
+        apply(keyOf(device), 1);
+    }
+
+    public void addedAll(Collection<Device> devices) {
+        devices.stream()
+                .collect(Collectors.groupingBy(DeviceStatisticsService::keyOf, Collectors.counting()))
+                .forEach(this::apply);
+    }
+
+    public void removed(DeviceStatistic.Key key) {
+        apply(key, -1);
+    }
+
+    public void moved(DeviceStatistic.Key from, DeviceStatistic.Key to) {
+        if (!from.equals(to)) {
+            apply(from, -1);
+            apply(to, 1);
+        }
+    }
+
+    public DeviceStatisticsVO getStatistics() {
+        Date today = Date.valueOf(LocalDate.now());
+        List<PassportStatisticsVO> passports = jdbcTemplate.query(PASSPORTS_SQL, (rs, rowNum) -> new PassportStatisticsVO(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getLong(4),
+                rs.getLong(5),
+                rs.getLong(6)
+        ), today);
+
+        long devices = passports.stream().mapToLong(PassportStatisticsVO::devices).sum();
+        long registered = passports.stream().mapToLong(PassportStatisticsVO::registered).sum();
+        long inWarranty = passports.stream().mapToLong(PassportStatisticsVO::inWarranty).sum();
+        return new DeviceStatisticsVO(devices, registered, devices - registered, inWarranty, devices - inWarranty, passports);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void initialize() {
+        Long rows = jdbcTemplate.queryForObject("select count(*) from device_statistics", Long.class);
+        if (rows != null && rows == 0) {
+            reconcile();
+        }
+    }
+
+    @Scheduled(cron = "${statistics.devices.reconcile-cron:0 30 3 * * *}")
+    @Transactional
+    public void reconcile() {
+        jdbcTemplate.update("delete from device_statistics");
+        int rows = jdbcTemplate.update("insert into device_statistics " +
+                "(passport_id, registered, warranty_expiration_date, device_count) " +
+                "select passport_id, user_id is not null, warranty_expiration_date, count(*) from devices " +
+                "where passport_id is not null and warranty_expiration_date is not null " +
+                "group by passport_id, user_id is not null, warranty_expiration_date");
+        logger.info("Device statistics reconciled into {} rows", rows);
+    }
+
+    public Optional<DeviceStatistic.Key> findKey(String serialNumber) {
+        return jdbcTemplate.query("select passport_id, user_id is not null, warranty_expiration_date from devices where serial_number = ?",
+                (rs, rowNum) -> new DeviceStatistic.Key(
+                        rs.getObject(1) == null ? null : rs.getLong(1),
+                        rs.getBoolean(2),
+                        rs.getDate(3) == null ? null : rs.getDate(3).toLocalDate()),
+                serialNumber).stream().findFirst();
+    }
+
+    public static DeviceStatistic.Key keyOf(Device device) {
+        return new DeviceStatistic.Key(
+                device.getPassport() == null ? null : device.getPassport().getId(),
+                device.getUser() != null,
+                device.getWarrantyExpirationDate()
+        );
+    }
+
+    private void apply(DeviceStatistic.Key key, long delta) {
+        if (key.getPassportId() == null || key.getWarrantyExpirationDate() == null) {
+            return;
+        }
+
+        // a removal never creates a row, a missing one is restored by the next reconcile
+        if (delta < 0) {
+            jdbcTemplate.update(UPDATE_SQL, delta, key.getPassportId(), key.isRegistered(), key.getWarrantyExpirationDate());
+            return;
+        }
+        jdbcTemplate.update(upsertSql(), delta, key.getPassportId(), key.isRegistered(), Date.valueOf(key.getWarrantyExpirationDate()));
+    }
+
+    private String upsertSql() {
+        String sql = upsertSql;
+        if (sql == null) {
+            String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            sql = "PostgreSQL".equals(database) ? POSTGRES_UPSERT_SQL : MERGE_SQL;
+            upsertSql = sql;
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,100 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.utils.CountMode;
+import bg.tuvarna.devicebackend.utils.CustomPage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Fills the totals of paged listings using the count mode configured per listing
+ * with listings.&lt;listing&gt;.count-mode (EXACT by default).
+ * ESTIMATED reads the planner statistics of the listing table and is only possible for unfiltered
+ * listings on Postgres, otherwise it falls back to CACHED. CACHED keeps exact counts for a short TTL
+ * and is cleared by {@link #invalidate()} on every write to the listed data.
+ * Invalidation only reaches this node, so with several replicas a total can miss writes made on
+ * another node for up to the 30 second TTL.
+ */
+@Component
+@RequiredArgsConstructor
+public class ListingCounter {
+    private static final long CACHE_TTL_NANOS = Duration.ofSeconds(30).toNanos();
+    private static final int MAX_CACHED_COUNTS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Environment environment;
+    private final Map<String, CachedCount> cachedCounts = new ConcurrentHashMap<>();
+    private volatile Boolean postgres;
+
+    public void fillTotals(CustomPage<?> page, String listing, String searchBy, LongSupplier exactCount) {
+        CountMode mode = environment.getProperty("listings." + listing + ".count-mode", CountMode.class, CountMode.EXACT);
+
+        long total = -1;
+        if (mode == CountMode.ESTIMATED) {
+            total = searchBy == null ? estimate(listing) : -1;
+            if (total < 0) {
+                mode = CountMode.CACHED;
+            }
+        }
+        if (mode == CountMode.CACHED) {
+            total = cached(listing, searchBy, exactCount);
+        } else if (mode == CountMode.EXACT) {
+            total = exactCount.getAsLong();
+        }
+
+        page.setTotalItems(total);
+        page.setTotalPages((int) ((total + page.getSize() - 1) / page.getSize()));
+        page.setCountMode(mode);
+    }
+
+    public void invalidate() {
+        cachedCounts.clear();
+    }
+
+    private long cached(String listing, String searchBy, LongSupplier exactCount) {
+        String key = searchBy == null ? listing : listing + ":" + searchBy;
+        long now = System.nanoTime();
+
+        CachedCount cachedCount = cachedCounts.get(key);
+        if (cachedCount != null && now - cachedCount.createdAt() < CACHE_TTL_NANOS) {
+            return cachedCount.count();
+        }
+
+        long count = exactCount.getAsLong();
+        if (cachedCounts.size() >= MAX_CACHED_COUNTS) {
+            cachedCounts.clear();
+        }
+        cachedCounts.put(key, new CachedCount(count, now));
+        return count;
+    }
+
+    private long estimate(String table) {
+        if (!isPostgres()) {
+            return -1;
+        }
+        try {
+            Long estimate = jdbcTemplate.queryForObject("select reltuples::bigint from pg_class where oid = to_regclass(?)", Long.class, "public." + table);
+            return estimate == null ? -1 : estimate;
+        } catch (DataAccessException e) {
+            return -1;
+        }
+    }
+
+    private boolean isPostgres() {
+        if (postgres == null) {
+            postgres = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+        }
+        return postgres;
+    }
+
+    private record CachedCount(long count, long createdAt) {
+    }
+}
@@ -0,0 +1,130 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportErrorVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportResultVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportRow;
+import bg.tuvarna.devicebackend.models.dtos.PassportVO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams passport definitions from CSV or NDJSON line by line, so the file is never buffered as a whole.
+ * CSV columns: name,model,serialPrefix,warrantyMonths,fromSerialNumber,toSerialNumber (header line is optional).
+ */
+@Service
+@AllArgsConstructor
+public class PassportImportService {
+    private static final int CHUNK_SIZE = 1000;
+    private static final String CSV_HEADER = "name,model,serialPrefix,warrantyMonths,fromSerialNumber,toSerialNumber";
+
+    private final PassportService passportService;
+    private final ObjectMapper objectMapper;
+
+    public PassportImportResultVO importPassports(InputStream inputStream, boolean csv) {
+        List<PassportImportErrorVO> errors = new ArrayList<>();
+        List<PassportImportRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        int imported = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (csv && lineNumber == 1 && line.trim().equalsIgnoreCase(CSV_HEADER))) {
+                    continue;
+                }
+
+                try {
+                    chunk.add(new PassportImportRow(lineNumber, csv ? parseCsv(line) : parseJson(line)));
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    errors.add(new PassportImportErrorVO(lineNumber, "Malformed row"));
+                }
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    imported += passportService.importChunk(chunk, errors);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new CustomException("Failed to read import", ErrorCode.Failed);
+        }
+
+        if (!chunk.isEmpty()) {
+            imported += passportService.importChunk(chunk, errors);
+        }
+
+        return new PassportImportResultVO(imported, errors.size(), errors);
+    }
+
+    private PassportVO parseJson(String line) throws JsonProcessingException {
+        PassportVO vo = objectMapper.readValue(line, PassportVO.class);
+        return validate(new PassportVO(null, vo.name(), vo.model(), vo.serialPrefix(), vo.warrantyMonths(), vo.fromSerialNumber(), vo.toSerialNumber()));
+    }
+
+    private static PassportVO parseCsv(String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() != 6) {
+            throw new IllegalArgumentException("Expected 6 columns");
+        }
+
+        return validate(new PassportVO(
+                null,
+                values.get(0).trim(),
+                values.get(1).trim(),
+                values.get(2).trim(),
+                Integer.parseInt(values.get(3).trim()),
+                Long.parseLong(values.get(4).trim()),
+                Long.parseLong(values.get(5).trim())
+        ));
+    }
+
+    private static PassportVO validate(PassportVO vo) {
+        if (vo.name() == null || vo.name().isBlank() || vo.serialPrefix() == null || vo.serialPrefix().isBlank() ||
+                vo.fromSerialNumber() < 0 || vo.warrantyMonths() < 0) {
+            throw new IllegalArgumentException("Missing or negative values");
+        }
+        return vo;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+
+        return values;
+    }
+}
@@ -0,0 +1,62 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of single serial lookups in front of the passport index. Hits are kept for
+ * passports.lookup-cache.ttl and misses for the shorter passports.lookup-cache.miss-ttl, so a passport
+ * that appears on the next index refresh is not hidden for long. Keys come from a public endpoint, so
+ * the map is capped at passports.lookup-cache.max-entries. {@link #clear()} is called on every passport
+ * save, delete, import and index refresh, since one range change can affect any number of serials.
+ */
+@Component
+public class PassportLookupCache {
+    private final long ttlNanos;
+    private final long missTtlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public PassportLookupCache(@Value("${passports.lookup-cache.ttl:PT1M}") Duration ttl,
+                               @Value("${passports.lookup-cache.miss-ttl:PT10S}") Duration missTtl,
+                               @Value("${passports.lookup-cache.max-entries:10000}") int maxEntries) {
+        this.ttlNanos = ttl.toNanos();
+        this.missTtlNanos = missTtl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    public Optional<Passport> get(String serialId, Function<String, Optional<Passport>> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(serialId);
+        if (entry != null && !entry.isExpired(now)) {
+            return Optional.ofNullable(entry.passport);
+        }
+
+        Optional<Passport> passport = loader.apply(serialId);
+        if (entries.size() >= maxEntries) {
+            entries.entrySet().removeIf(e -> e.getValue().isExpired(now));
+            if (entries.size() >= maxEntries) {
+                entries.clear();
+            }
+        }
+        entries.put(serialId, new Entry(passport.orElse(null), now + (passport.isPresent() ? ttlNanos : missTtlNanos)));
+        return passport;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private record Entry(Passport passport, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
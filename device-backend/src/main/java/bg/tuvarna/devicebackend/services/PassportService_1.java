@@ -2,59 +2,162 @@ package bg.tuvarna.devicebackend.services;
 
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.indexes.PassportSerialIndex;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportErrorVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportRow;
 import bg.tuvarna.devicebackend.models.dtos.PassportVO;
 import bg.tuvarna.devicebackend.models.entities.Passport;
 import bg.tuvarna.devicebackend.models.mappers.PassportMapper;
+import bg.tuvarna.devicebackend.repositories.PassportBatchRepository;
 import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.utils.ConstraintViolations;
 import bg.tuvarna.devicebackend.utils.CustomPage;
+import jakarta.annotation.PostConstruct;
 import lombok.AllArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @AllArgsConstructor
 public class PassportService {
+    private static final int MAX_SERIALS_PER_LOOKUP = 1000;
+
     private final PassportRepository passportRepository;
+    private final PassportBatchRepository passportBatchRepository;
+    private final PassportSerialIndex passportSerialIndex;
+    private final PassportLookupCache passportLookupCache;
+
+    @PostConstruct
+    public void loadSerialIndex() {
+        passportSerialIndex.rebuild(passportRepository.findAll());
+    }
+
+    // picks up passports saved or deleted on other nodes, which is how long they can stay unknown here
+    @Scheduled(fixedDelayString = "${passports.serial-index.refresh-interval:PT1M}",
+            initialDelayString = "${passports.serial-index.refresh-interval:PT1M}")
+    public void refreshSerialIndex() {
+        passportSerialIndex.rebuild(passportRepository.findAll());
+        passportLookupCache.clear();
+    }
+
+    public synchronized void save(PassportVO passportVO) {
+        if (!isValidRange(passportVO))
+            throw new CustomException("Invalid serial number range", ErrorCode.Validation);
+        if (passportSerialIndex.findOverlap(passportVO.serialPrefix(), passportVO.fromSerialNumber(), passportVO.toSerialNumber(), passportVO.id()).isPresent())
+            throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
 
-    public void save(PassportVO passportVO) {
         Passport passport;
-        List<Passport> passports = passportRepository.findByFromSerialNumberBetween(passportVO.serialPrefix(), passportVO.fromSerialNumber(), passportVO.toSerialNumber());
         if (passportVO.id() == null) {
-            if (!passports.isEmpty())
-                throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
             passport = PassportMapper.toEntity(passportVO);
         } else {
             passport = findPassportById(passportVO.id());
-            if (!passports.isEmpty() && passports.stream().anyMatch(p -> !Objects.equals(p.getId(), passport.getId())))
-                throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
             PassportMapper.updateEntity(passport, passportVO);
         }
 
-        passportRepository.save(passport);
+        try {
+            passportRepository.save(passport);
+        } catch (DataIntegrityViolationException e) {
+            // another node saved an overlapping range that this node's index hasn't seen yet
+            if (ConstraintViolations.isViolated(e, Passport.SERIAL_RANGE_CONSTRAINT))
+                throw new CustomException("Serial number already exists", ErrorCode.AlreadyExists);
+            throw e;
+        }
+        passportLookupCache.clear();
     }
 
-    public Passport findPassportById(Long id) {
-        return passportRepository.findById(id).orElse(null);
-    }
+    /**
+     * Validates and inserts one chunk of an import in a single transaction.
+     * Rows are checked against the committed passports and against the accepted rows of the same chunk;
+     * earlier chunks are already in the index, so the whole import is validated in one pass.
+     * @return the number of inserted passports, rejected rows are added to errors
+     */
+    public synchronized int importChunk(List<PassportImportRow> rows, List<PassportImportErrorVO> errors) {
+        PassportSerialIndex chunkIndex = new PassportSerialIndex();
+        List<Passport> passports = new ArrayList<>(rows.size());
 
-    public Passport findPassportBySerialId(String serialId) {
-        List<Passport> passports = getPassportsBySerialPrefix(serialId);
-        for (Passport passport : passports) {
-            int serialNumber;
-            try {
-                serialNumber = Integer.parseInt(serialId.split(passport.getSerialPrefix())[1]);
-            } catch (NumberFormatException e) {
+        for (PassportImportRow row : rows) {
+            PassportVO vo = row.passport();
+            if (!isValidRange(vo)) {
+                errors.add(new PassportImportErrorVO(row.line(), "Invalid serial number range"));
                 continue;
             }
-            if (serialNumber >= passport.getFromSerialNumber() && serialNumber <= passport.getToSerialNumber()) {
-                return passport;
+            if (passportSerialIndex.findOverlap(vo.serialPrefix(), vo.fromSerialNumber(), vo.toSerialNumber(), null).isPresent() ||
+                    chunkIndex.findOverlap(vo.serialPrefix(), vo.fromSerialNumber(), vo.toSerialNumber(), null).isPresent()) {
+                errors.add(new PassportImportErrorVO(row.line(), "Serial number already exists"));
+                continue;
             }
+
+            Passport passport = PassportMapper.toEntity(vo);
+            // the line number keys the row in the chunk index until insertAll assigns the real id
+            passport.setId(row.line());
+            chunkIndex.put(passport);
+            passports.add(passport);
+        }
+
+        if (passports.isEmpty()) {
+            return 0;
         }
-        throw new CustomException("Passport not found for serial number: " + serialId, ErrorCode.Failed);
+
+        List<Long> lines = passports.stream().map(Passport::getId).toList();
+        try {
+            passportBatchRepository.insertAll(passports);
+        } catch (RuntimeException e) {
+            String error = ConstraintViolations.isViolated(e, Passport.SERIAL_RANGE_CONSTRAINT)
+                    ? "Serial number range of the chunk already exists" : "Failed to save passport";
+            lines.forEach(line -> errors.add(new PassportImportErrorVO(line, error)));
+            return 0;
+        }
+        passports.forEach(passportSerialIndex::put);
+        passportLookupCache.clear();
+        return passports.size();
+    }
+
+    private static boolean isValidRange(PassportVO passportVO) {
+        return passportVO.fromSerialNumber() >= 0 && passportVO.fromSerialNumber() <= passportVO.toSerialNumber();
+    }
+
+    public Passport findPassportById(Long id) {
+        return passportRepository.findById(id).orElse(null);
+    }
+
+    /**
+     * Resolves the serial through the lookup cache and the index, misses never reach the database.
+     * Passports saved on other nodes are found after the next {@link #refreshSerialIndex()}.
+     */
+    public Optional<Passport> lookupPassportBySerialId(String serialId) {
+        if (serialId == null) {
+            return Optional.empty();
+        }
+        return passportLookupCache.get(serialId, passportSerialIndex::find);
+    }
+
+    /**
+     * Size-limited lookup for the public batch endpoint. Internal callers use {@link #resolvePassports(List)}.
+     */
+    public Map<String, Passport> lookupPassportsBySerialIds(List<String> serialIds) {
+        if (serialIds.size() > MAX_SERIALS_PER_LOOKUP)
+            throw new CustomException("Too many serial numbers", ErrorCode.Validation, String.valueOf(MAX_SERIALS_PER_LOOKUP));
+        return resolvePassports(serialIds);
+    }
+
+    /**
+     * Resolves many serials at once through the index. Serials without a passport map to null.
+     */
+    public Map<String, Passport> resolvePassports(List<String> serialIds) {
+        return passportSerialIndex.findAll(serialIds);
+    }
+
+    public Passport findPassportBySerialId(String serialId) {
+        return lookupPassportBySerialId(serialId)
+                .orElseThrow(() -> new CustomException("Passport not found for serial number: " + serialId, ErrorCode.Failed));
     }
 
     public CustomPage<Passport> getPassports(int page, int size) {
@@ -70,15 +173,12 @@ public class PassportService {
         return customPage;
     }
 
-    public List<Passport> getPassportsBySerialPrefix(String serialId) {
-        return passportRepository.findByFromSerial(serialId);
-    }
-
     public void delete(Long id) {
         try {
             passportRepository.deleteById(id);
         } catch (RuntimeException e) {
             throw new CustomException("Can't delete passport", ErrorCode.Failed);
         }
+        passportLookupCache.clear();
     }
 }
\ No newline at end of file
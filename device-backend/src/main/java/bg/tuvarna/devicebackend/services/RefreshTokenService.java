@@ -0,0 +1,134 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.dtos.AuthResponseDTO;
+import bg.tuvarna.devicebackend.models.dtos.UserVO;
+import bg.tuvarna.devicebackend.models.entities.RefreshToken;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.repositories.RefreshTokenRepository;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Issues and exchanges opaque refresh tokens, so clients renew their access token without sending the
+ * password and paying for a bcrypt check. Tokens are 256 random bits, so a plain SHA-256 hash is enough
+ * to store them. Each token can be exchanged once. Presenting a token that was already exchanged means
+ * a copy leaked, so every token of that login is revoked.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtService jwtService;
+    private final DeviceService deviceService;
+    private final Duration refreshTokenTtl;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               UserRepository userRepository,
+                               JwtService jwtService,
+                               DeviceService deviceService,
+                               @Value("${security.jwt.refresh-token-ttl:P30D}") Duration refreshTokenTtl) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.jwtService = jwtService;
+        this.deviceService = deviceService;
+        this.refreshTokenTtl = refreshTokenTtl;
+    }
+
+    @Transactional
+    public String issue(Long userId) {
+        return issue(userId, UUID.randomUUID().toString());
+    }
+
+    // the revocation of a reused token's family has to be committed even though the request fails
+    @Transactional(noRollbackFor = CustomException.class)
+    public AuthResponseDTO refresh(String token) {
+        RefreshToken current = find(token);
+        if (refreshTokenRepository.markRotated(current.getId()) == 0) {
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            logger.warn("Reuse of a rotated refresh token for user {}, revoking its session", current.getUserId());
+            throw invalidToken();
+        }
+
+        User user = userRepository.findForRefresh(current.getUserId()).orElseThrow(RefreshTokenService::invalidToken);
+        String refreshToken = issue(user.getId(), current.getFamilyId());
+        return new AuthResponseDTO(jwtService.generateToken(user), deviceService.withRenovations(new UserVO(user)), refreshToken);
+    }
+
+    @Transactional
+    public void revoke(String token) {
+        refreshTokenRepository.revokeFamily(find(token).getFamilyId());
+    }
+
+    @Transactional
+    public void revokeAll(Long userId) {
+        refreshTokenRepository.revokeAllForUser(userId);
+    }
+
+    // rotated tokens are kept until they expire, otherwise their reuse could not be detected
+    @Scheduled(cron = "${security.jwt.refresh-token-cleanup-cron:0 15 4 * * *}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        logger.info("Deleted {} expired refresh tokens", deleted);
+    }
+
+    private String issue(Long userId, String familyId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(token))
+                .userId(userId)
+                .familyId(familyId)
+                .expiresAt(Instant.now().plus(refreshTokenTtl))
+                .build());
+        return token;
+    }
+
+    private RefreshToken find(String token) {
+        if (token == null || token.isBlank()) {
+            throw invalidToken();
+        }
+
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hash(token)).orElseThrow(RefreshTokenService::invalidToken);
+        if (refreshToken.isRevoked() || refreshToken.getExpiresAt().isBefore(Instant.now())) {
+            throw invalidToken();
+        }
+        return refreshToken;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static CustomException invalidToken() {
+        return new CustomException("Invalid refresh token", ErrorCode.WrongCredentials);
+    }
+}
@@ -1,21 +1,33 @@
 package bg.tuvarna.devicebackend.services;
 
+import bg.tuvarna.devicebackend.config.PrincipalCache;
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
 import bg.tuvarna.devicebackend.models.dtos.ChangePasswordVO;
+import bg.tuvarna.devicebackend.models.dtos.DeviceVO;
+import bg.tuvarna.devicebackend.models.dtos.OwnedDeviceVO;
 import bg.tuvarna.devicebackend.models.dtos.UserCreateVO;
 import bg.tuvarna.devicebackend.models.dtos.UserListing;
 import bg.tuvarna.devicebackend.models.dtos.UserUpdateVO;
+import bg.tuvarna.devicebackend.models.dtos.UserVO;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.utils.ConstraintViolations;
 import bg.tuvarna.devicebackend.utils.CustomPage;
+import bg.tuvarna.devicebackend.utils.PageCursor;
 import lombok.AllArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,27 +36,44 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final DeviceService deviceService;
-
+    private final ListingCounter listingCounter;
+    private final DeviceRepository deviceRepository;
+    private final PrincipalCache principalCache;
+    private final RefreshTokenService refreshTokenService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Inserts the user and the device in one transaction. Taken emails and phones are rejected by the
+     * unique constraints on users, and any failure rolls both inserts back.
+     * The password is hashed before the transaction starts, so a slow or queued hash never holds a
+     * pooled connection.
+     */
     public void register(UserCreateVO userCreateVO) {
-        if (isEmailTaken(userCreateVO.email())) {
-            throw new CustomException("Email already taken", ErrorCode.AlreadyExists);
-        }
-        if (isPhoneTaken(userCreateVO.phone())) {
-            throw new CustomException("Phone already taken", ErrorCode.AlreadyExists);
-        }
-
         User user = new User(userCreateVO);
-
         user.setPassword(passwordEncoder.encode(userCreateVO.password()));
-        user = userRepository.save(user);
-
-        try {
-            deviceService.alreadyExist(userCreateVO.deviceSerialNumber());
-            deviceService.registerDevice(userCreateVO.deviceSerialNumber(), userCreateVO.purchaseDate(), user);
-        } catch (CustomException e) {
-            userRepository.delete(user);
-            throw e;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User saved;
+            try {
+                saved = userRepository.saveAndFlush(user);
+            } catch (DataIntegrityViolationException e) {
+                throw toAlreadyExists(e);
+            }
+
+            deviceService.registerDevice(userCreateVO.deviceSerialNumber(), userCreateVO.purchaseDate(), saved);
+        });
+        listingCounter.invalidate();
+    }
+
+    // only the unique keys of users mean a taken email or phone, any other failure is rethrown
+    private static RuntimeException toAlreadyExists(DataIntegrityViolationException e) {
+        if (ConstraintViolations.isViolated(e, User.EMAIL_CONSTRAINT)) {
+            return new CustomException("Email already taken", ErrorCode.AlreadyExists);
         }
+        if (ConstraintViolations.isViolated(e, User.PHONE_CONSTRAINT)) {
+            return new CustomException("Phone already taken", ErrorCode.AlreadyExists);
+        }
+        return e;
     }
 
     public boolean isEmailTaken(String email) {
@@ -61,41 +90,71 @@ public class UserService {
         return userRepository.findById(id).orElseThrow(() -> new CustomException("User not found", ErrorCode.EntityNotFound));
     }
 
+    public UserVO getUserView(Long id) {
+        return deviceService.withRenovations(new UserVO(getUserById(id)));
+    }
+
     public User getUserByUsername(String username) {
         return userRepository.findByEmailOrPhone(username).orElseThrow(() -> new CustomException("User not found", ErrorCode.EntityNotFound));
     }
 
     public CustomPage<UserListing> getUsers(String searchBy, int page, int size) {
-        Page<User> userPage;
-        if (searchBy == null) {
-            userPage = userRepository.getAllUsers(PageRequest.of(page - 1, size));
-        } else {
-            userPage = userRepository.searchBy(searchBy, PageRequest.of(page - 1, size));
-        }
+        List<Long> ids = userRepository.searchPageIds(searchBy, PageRequest.of(page - 1, size));
 
         CustomPage<UserListing> customPage = new CustomPage<>();
-        customPage.setTotalPages(userPage.getTotalPages());
-        customPage.setCurrentPage(userPage.getNumber() + 1);
-        customPage.setSize(userPage.getSize());
-        customPage.setTotalItems(userPage.getTotalElements());
+        customPage.setCurrentPage(page);
+        customPage.setSize(size);
+        customPage.setItems(toListings(ids, searchBy));
+        listingCounter.fillTotals(customPage, "users", searchBy, () -> userRepository.countBySearch(searchBy));
 
-        customPage.setItems(userPage
-                .stream()
-                .peek(user -> {
-                            if (searchBy != null) {
-                                user.setDevices(user.getDevices().stream().filter(
-                                        device -> device.getSerialNumber().contains(searchBy)
-                                ).collect(Collectors.toList()));
-                            }
-                        }
-                )
-                .map(UserListing::new)
-                .toList()
-        );
+        return customPage;
+    }
+
+    public CustomPage<UserListing> getUsersAfter(String searchBy, String cursor, int size) {
+        if (size < 1)
+            throw new CustomException("Page size must be positive", ErrorCode.Validation);
+
+        List<Long> ids = userRepository.findIdsAfter(searchBy, PageCursor.decodeId(cursor), PageRequest.of(0, size + 1));
+
+        boolean hasNext = ids.size() > size;
+        CustomPage<UserListing> customPage = new CustomPage<>();
+        customPage.setItems(toListings(hasNext ? ids.subList(0, size) : ids, searchBy));
+        customPage.setNextCursor(hasNext ? PageCursor.encode(ids.get(size - 1).toString()) : null);
+        customPage.setSize(size);
 
         return customPage;
     }
 
+    /**
+     * Loads a page of users in two queries whatever the number of devices: one for the users
+     * and one for the devices (with their passports) of all users on the page.
+     * When searching, only the devices whose serial number contains searchBy are read.
+     */
+    private List<UserListing> toListings(List<Long> ids, String searchBy) {
+        if (ids.isEmpty())
+            return List.of();
+
+        Map<Long, List<DeviceVO>> devices = deviceRepository.findViewsByOwners(ids, escapeLike(searchBy))
+                .stream()
+                .collect(Collectors.groupingBy(OwnedDeviceVO::userId, Collectors.mapping(OwnedDeviceVO::device, Collectors.toList())));
+        Map<Long, UserListing> users = userRepository.findListings(ids)
+                .stream()
+                .collect(Collectors.toMap(UserListing::id, Function.identity()));
+
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(user -> user.withDevices(devices.getOrDefault(user.id(), List.of())))
+                .toList();
+    }
+
+    // keeps the serial filter a plain "contains", as it was when it ran in Java
+    private static String escapeLike(String value) {
+        if (value == null)
+            return null;
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     public void updateUser(UserUpdateVO userUpdateVO) {
         User user = getUserById(userUpdateVO.id());
         if (user.getRole() == UserRole.ADMIN) {
@@ -114,6 +173,8 @@ public class UserService {
         user.setPhone(userUpdateVO.phone());
         user.setEmail(userUpdateVO.email());
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
+        listingCounter.invalidate();
     }
 
     public void updatePassword(Long id, ChangePasswordVO passwordVO) {
@@ -124,6 +185,8 @@ public class UserService {
         if (passwordEncoder.matches(passwordVO.oldPassword(), user.getPassword())) {
             user.setPassword(passwordEncoder.encode(passwordVO.newPassword()));
             userRepository.save(user);
+            principalCache.invalidate(user.getId());
+            refreshTokenService.revokeAll(user.getId());
         } else {
             throw new CustomException("Old password didn't match", ErrorCode.Validation);
         }
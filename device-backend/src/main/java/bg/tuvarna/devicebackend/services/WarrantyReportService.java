@@ -0,0 +1,142 @@
+package bg.tuvarna.devicebackend.services;
+
+import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.entities.WarrantyExpiryReport;
+import bg.tuvarna.devicebackend.models.enums.ReportDimension;
+import bg.tuvarna.devicebackend.repositories.WarrantyExpiryReportRepository;
+import bg.tuvarna.devicebackend.utils.ConstraintViolations;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds the daily report of warranties expiring in the next reports.warranty-expiry.days days.
+ * The window is split into one-day slices of the warrantyExpirationDate index and the slices are
+ * aggregated in parallel, one task per core, so no single query scans the whole window.
+ * The job runs on every node. When two nodes write the same report at once, the unique report key
+ * rejects the later transaction, so the report is written once.
+ */
+@Service
+@RequiredArgsConstructor
+public class WarrantyReportService {
+    private static final Logger logger = LoggerFactory.getLogger(WarrantyReportService.class);
+    private static final String BY_PASSPORT_SQL = "select p.id, p.name, p.model, count(*) from devices d " +
+            "join passports p on p.id = d.passport_id " +
+            "where d.warranty_expiration_date >= ? and d.warranty_expiration_date < ? " +
+            "group by p.id, p.name, p.model";
+    private static final String BY_OWNER_SQL = "select u.id, u.email, count(*) from devices d " +
+            "join users u on u.id = d.user_id " +
+            "where d.warranty_expiration_date >= ? and d.warranty_expiration_date < ? " +
+            "group by u.id, u.email";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WarrantyExpiryReportRepository warrantyExpiryReportRepository;
+
+    @Value("${reports.warranty-expiry.days:30}")
+    private int windowDays;
+
+    @Scheduled(cron = "${reports.warranty-expiry.cron:0 0 2 * * *}")
+    public void generateDailyReport() {
+        generateReport(LocalDate.now());
+    }
+
+    public void generateReport(LocalDate reportDate) {
+        LocalDate windowEnd = reportDate.plusDays(windowDays);
+        Map<Long, WarrantyExpiryReport> byPassport = new HashMap<>();
+        Map<Long, WarrantyExpiryReport> byOwner = new HashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<List<WarrantyExpiryReport>>> slices = new ArrayList<>();
+            for (LocalDate day = reportDate; day.isBefore(windowEnd); day = day.plusDays(1)) {
+                LocalDate from = day;
+                slices.add(executor.submit(() -> aggregateSlice(from, from.plusDays(1))));
+            }
+            for (Future<List<WarrantyExpiryReport>> slice : slices) {
+                for (WarrantyExpiryReport row : slice.get()) {
+                    merge(row.getDimension() == ReportDimension.PASSPORT ? byPassport : byOwner, row);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException("Warranty report interrupted", ErrorCode.Failed);
+        } catch (ExecutionException e) {
+            logger.error("Failed to build warranty report for {}", reportDate, e.getCause());
+            throw new CustomException("Failed to build warranty report", ErrorCode.Failed);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<WarrantyExpiryReport> rows = new ArrayList<>(byPassport.size() + byOwner.size());
+        rows.addAll(byPassport.values());
+        rows.addAll(byOwner.values());
+        rows.forEach(row -> {
+            row.setReportDate(reportDate);
+            row.setWindowEnd(windowEnd);
+        });
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                warrantyExpiryReportRepository.deleteByReportDate(reportDate);
+                warrantyExpiryReportRepository.saveAll(rows);
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (!ConstraintViolations.isViolated(e, WarrantyExpiryReport.REPORT_KEY_CONSTRAINT))
+                throw e;
+            logger.info("Warranty report for {} was written by another node", reportDate);
+            return;
+        }
+        logger.info("Warranty report for {} written with {} rows", reportDate, rows.size());
+    }
+
+    public List<WarrantyExpiryReport> getLatestReport(ReportDimension dimension) {
+        LocalDate reportDate = warrantyExpiryReportRepository.findLatestReportDate();
+        if (reportDate == null)
+            throw new CustomException("Report not generated yet", ErrorCode.EntityNotFound);
+        return warrantyExpiryReportRepository.findByReportDateAndDimensionOrderByDeviceCountDesc(reportDate, dimension);
+    }
+
+    private List<WarrantyExpiryReport> aggregateSlice(LocalDate from, LocalDate to) {
+        Date start = Date.valueOf(from);
+        Date end = Date.valueOf(to);
+        List<WarrantyExpiryReport> rows = new ArrayList<>(jdbcTemplate.query(BY_PASSPORT_SQL, (rs, rowNum) -> WarrantyExpiryReport.builder()
+                .dimension(ReportDimension.PASSPORT)
+                .dimensionId(rs.getLong(1))
+                .label(rs.getString(2) + " " + rs.getString(3))
+                .deviceCount(rs.getLong(4))
+                .build(), start, end));
+        rows.addAll(jdbcTemplate.query(BY_OWNER_SQL, (rs, rowNum) -> WarrantyExpiryReport.builder()
+                .dimension(ReportDimension.OWNER)
+                .dimensionId(rs.getLong(1))
+                .label(rs.getString(2))
+                .deviceCount(rs.getLong(3))
+                .build(), start, end));
+        return rows;
+    }
+
+    private static void merge(Map<Long, WarrantyExpiryReport> rows, WarrantyExpiryReport row) {
+        rows.merge(row.getDimensionId(), row, (existing, added) -> {
+            existing.setDeviceCount(existing.getDeviceCount() + added.getDeviceCount());
+            return existing;
+        });
+    }
+}
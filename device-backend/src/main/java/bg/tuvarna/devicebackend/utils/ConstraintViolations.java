@@ -0,0 +1,29 @@
+package bg.tuvarna.devicebackend.utils;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import java.sql.SQLException;
+
+/**
+ * Tells which database constraint rejected a write. Hibernate reports the constraint name directly,
+ * plain JDBC writes only carry it in the driver message, which Postgres and H2 both include.
+ */
+public final class ConstraintViolations {
+
+    private ConstraintViolations() {
+    }
+
+    public static boolean isViolated(Throwable e, String constraint) {
+        String name = constraint.toLowerCase();
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null &&
+                    violation.getConstraintName().toLowerCase().contains(name)) {
+                return true;
+            }
+            if (cause instanceof SQLException && cause.getMessage() != null && cause.getMessage().toLowerCase().contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
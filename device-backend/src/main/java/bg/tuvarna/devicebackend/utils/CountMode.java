@@ -0,0 +1,5 @@
+package bg.tuvarna.devicebackend.utils;
+
+public enum CountMode {
+    EXACT, ESTIMATED, CACHED
+}
@@ -15,4 +15,12 @@ public class CustomPage<T> {
     private int size;
     private long totalItems;
     private List<T> items;
+    /**
+     * How totalItems was obtained, see {@link CountMode}.
+     */
+    private CountMode countMode;
+    /**
+     * Set only in cursor mode, where the totals are not computed. Null when there is no next page.
+     */
+    private String nextCursor;
 }
\ No newline at end of file
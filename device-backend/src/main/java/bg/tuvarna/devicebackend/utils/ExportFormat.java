@@ -0,0 +1,17 @@
+package bg.tuvarna.devicebackend.utils;
+
+import org.springframework.http.MediaType;
+
+public enum ExportFormat {
+    CSV("text/csv"), NDJSON("application/x-ndjson");
+
+    private final MediaType mediaType;
+
+    ExportFormat(String mediaType) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+}
@@ -0,0 +1,46 @@
+package bg.tuvarna.devicebackend.utils;
+
+import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursors for keyset pagination. A cursor wraps the sort key of the last item of a page,
+ * the next page is then read with "where key > :last order by key".
+ */
+public final class PageCursor {
+    private PageCursor() {
+    }
+
+    public static String encode(String lastKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the wrapped key, or an empty string for a blank cursor (first page)
+     */
+    public static String decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return "";
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid cursor", ErrorCode.Validation);
+        }
+    }
+
+    public static long decodeId(String cursor) {
+        String key = decode(cursor);
+        if (key.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new CustomException("Invalid cursor", ErrorCode.Validation);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package bg.tuvarna.devicebackend.utils;
+
+/**
+ * Splits a serial number into its prefix and numeric suffix without allocating.
+ * Suffixes are plain decimal digits, zero padding is allowed ("ABC0042" has suffix 42)
+ * and values up to Long.MAX_VALUE are supported. Anything else parses to {@link #INVALID}.
+ */
+public final class SerialNumberFormat {
+    public static final long INVALID = -1;
+
+    private SerialNumberFormat() {
+    }
+
+    public static long parse(String serialId, String serialPrefix) {
+        if (serialId == null || serialPrefix == null || !serialId.startsWith(serialPrefix)) {
+            return INVALID;
+        }
+        return parseSuffix(serialId, serialPrefix.length());
+    }
+
+    public static long parseSuffix(CharSequence serialId, int prefixLength) {
+        int length = serialId.length();
+        if (prefixLength >= length) {
+            return INVALID;
+        }
+
+        long value = 0;
+        for (int i = prefixLength; i < length; i++) {
+            int digit = serialId.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -1,10 +1,14 @@
 package bg.tuvarna.devicebackend;
 
+import bg.tuvarna.devicebackend.config.JwtKey;
+import bg.tuvarna.devicebackend.config.JwtKeySet;
 import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.config.VerifiedToken;
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
 import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,8 +18,6 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.test.context.ActiveProfiles;
 
-import javax.crypto.SecretKey;
-import java.lang.reflect.Field;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,6 +32,9 @@ class DeviceBackendApplicationTests {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private JwtKeySet jwtKeySet;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -42,7 +47,7 @@ class DeviceBackendApplicationTests {
     }
 
     @Test
-    void jwtService_shouldGenerateTokenAndExtractId() {
+    void jwtService_shouldGenerateTokenAndVerifyId() {
         User u = new User();
         u.setId(42L);
         u.setRole(UserRole.USER);
@@ -50,8 +55,7 @@ class DeviceBackendApplicationTests {
         String token = jwtService.generateToken(u);
         assertNotNull(token);
 
-        String id = jwtService.extractId(token);
-        assertEquals("42", id);
+        assertEquals(42L, jwtService.verify(token).userId());
     }
 
     @Test
@@ -61,7 +65,23 @@ class DeviceBackendApplicationTests {
         u.setRole(UserRole.USER);
 
         String token = jwtService.generateToken(u);
-        assertTrue(jwtService.isTokenValid(token, u));
+        assertEquals(u.getId(), jwtService.verify(token).userId());
+    }
+
+    @Test
+    void jwtServiceVerify_shouldReturnClaims_whenTokenValid() {
+        User u = new User();
+        u.setId(9L);
+        u.setEmail("user@example.com");
+        u.setRole(UserRole.USER);
+
+        String token = jwtService.generateToken(u);
+        VerifiedToken verified = jwtService.verify(token);
+
+        assertEquals(9L, verified.userId());
+        assertEquals(UserRole.USER, verified.role());
+        assertEquals("user@example.com", verified.toPrincipal().getEmail());
+        assertSame(verified, jwtService.verify(token));
     }
 
     @Test
@@ -71,23 +91,36 @@ class DeviceBackendApplicationTests {
     }
 
     @Test
-    void jwtServiceExtractId_shouldThrow_whenTokenMalformed() {
-        CustomException ex = assertThrows(CustomException.class, () -> jwtService.extractId("not-a-jwt"));
+    void jwtServiceVerify_shouldThrow_whenTokenMalformed() {
+        CustomException ex = assertThrows(CustomException.class, () -> jwtService.verify("not-a-jwt"));
         assertEquals(ErrorCode.Failed, ex.getErrorCode());
     }
     @Test
-    void jwtServiceIsTokenExpired_shouldReturnTrue_whenTokenExpired() throws Exception {
-        Field keyField = JwtService.class.getDeclaredField("key");
-        keyField.setAccessible(true);
-        SecretKey key = (SecretKey) keyField.get(jwtService);
+    void jwtServiceVerify_shouldReturnNull_whenTokenExpired() throws Exception {
+        JwtKey key = jwtKeySet.signingKey();
 
         String expiredToken = Jwts.builder()
+                .setHeaderParam("kid", key.kid())
                 .setSubject("1")
                 .setIssuedAt(new Date(System.currentTimeMillis() - 60_000))
                 .setExpiration(new Date(System.currentTimeMillis() - 1_000))
-                .signWith(key)
+                .signWith(key.signingKey(), key.algorithm())
+                .compact();
+
+        assertNull(jwtService.verify(expiredToken));
+    }
+
+    @Test
+    void jwtServiceVerify_shouldThrow_whenKeyIdUnknown() {
+        JwtKey key = jwtKeySet.signingKey();
+
+        String token = Jwts.builder()
+                .setHeaderParam("kid", "unknown")
+                .setSubject("1")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(key.signingKey(), key.algorithm())
                 .compact();
 
-        assertTrue(jwtService.isTokenExpired(expiredToken));
+        assertThrows(JwtException.class, () -> jwtService.verify(token));
     }
 }
@@ -0,0 +1,89 @@
+package bg.tuvarna.devicebackend.pindexes;
+
+import bg.tuvarna.devicebackend.indexes.DeviceSerialFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class DeviceSerialFilterTests {
+
+    private DeviceSerialFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(0L);
+        filter = new DeviceSerialFilter(jdbcTemplate);
+    }
+
+    @Test
+    void mightContain_shouldReportEverything_beforeFirstBuild() {
+        assertTrue(filter.mightContain("ABC100"));
+    }
+
+    @Test
+    void build_shouldSkipScan_whenDisabledByDefault() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        DeviceSerialFilter disabled = new DeviceSerialFilter(jdbcTemplate);
+
+        disabled.build();
+        disabled.refresh();
+
+        assertTrue(disabled.mightContain("ABC100"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void mightContain_shouldNeverMissAddedSerials() {
+        filter.rebuild();
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("ABC" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("ABC" + i));
+        }
+    }
+
+    @Test
+    void rebuild_shouldKeepSerialsAddedDuringScan() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(0L);
+        DeviceSerialFilter scanned = new DeviceSerialFilter(jdbcTemplate);
+        scanned.rebuild();
+        doAnswer(invocation -> {
+            scanned.add("ABC100");
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        scanned.rebuild();
+
+        assertTrue(scanned.mightContain("ABC100"));
+    }
+
+    @Test
+    void mightContain_shouldRejectMostUnknownSerials() {
+        filter.rebuild();
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("ABC" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("XYZ" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,99 @@
+package bg.tuvarna.devicebackend.pindexes;
+
+import bg.tuvarna.devicebackend.indexes.PassportSerialIndex;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PassportSerialIndexTests {
+
+    private PassportSerialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PassportSerialIndex();
+        index.rebuild(List.of(
+                passport(1L, "ABC", 1, 999),
+                passport(2L, "ABC", 1000, 1999),
+                passport(3L, "AB", 1, 99999)
+        ));
+    }
+
+    @Test
+    void find_shouldReturnPassport_whenSerialInRange() {
+        assertEquals(1L, index.find("ABC100").orElseThrow().getId());
+        assertEquals(2L, index.find("ABC1000").orElseThrow().getId());
+    }
+
+    @Test
+    void find_shouldPreferLongestPrefix() {
+        assertEquals(3L, index.find("AB123").orElseThrow().getId());
+        assertEquals(1L, index.find("ABC123").orElseThrow().getId());
+    }
+
+    @Test
+    void find_shouldReturnEmpty_whenSerialOutOfRangeOrNotNumeric() {
+        assertTrue(index.find("ABC2000").isEmpty());
+        assertTrue(index.find("ABCX1").isEmpty());
+        assertTrue(index.find("XYZ1").isEmpty());
+        assertTrue(index.find(null).isEmpty());
+    }
+
+    @Test
+    void find_shouldSupportZeroPaddedAndLongSuffixes() {
+        index.put(passport(4L, "X.Y", 5_000_000_000L, 5_000_000_999L));
+
+        assertEquals(1L, index.find("ABC0042").orElseThrow().getId());
+        assertEquals(4L, index.find("X.Y5000000123").orElseThrow().getId());
+        assertTrue(index.find("XAY5000000123").isEmpty());
+        assertTrue(index.find("ABC99999999999999999999").isEmpty());
+        assertTrue(index.find("ABC-1").isEmpty());
+    }
+
+    @Test
+    void findOverlap_shouldDetectPartialAndContainingRanges() {
+        assertEquals(1L, index.findOverlap("ABC", 900, 950, null).orElseThrow().getId());
+        assertEquals(2L, index.findOverlap("ABC", 1500, 5000, null).orElseThrow().getId());
+        assertTrue(index.findOverlap("ABC", 0, 5000, null).isPresent());
+        assertTrue(index.findOverlap("ABC", 2000, 5000, null).isEmpty());
+        assertTrue(index.findOverlap("XYZ", 1, 5000, null).isEmpty());
+    }
+
+    @Test
+    void findOverlap_shouldIgnoreExcludedPassport() {
+        assertTrue(index.findOverlap("ABC", 1000, 1500, 2L).isEmpty());
+        assertEquals(1L, index.findOverlap("ABC", 500, 1500, 2L).orElseThrow().getId());
+    }
+
+    @Test
+    void put_shouldMoveRange_whenPassportUpdated() {
+        index.put(passport(1L, "XYZ", 1, 10));
+
+        assertTrue(index.find("ABC100").isEmpty());
+        assertEquals(1L, index.find("XYZ5").orElseThrow().getId());
+    }
+
+    @Test
+    void remove_shouldDropRange() {
+        index.remove(2L);
+
+        assertTrue(index.find("ABC1500").isEmpty());
+        assertEquals(1L, index.find("ABC100").orElseThrow().getId());
+    }
+
+    private static Passport passport(Long id, String prefix, long from, long to) {
+        return Passport.builder()
+                .id(id)
+                .name("P" + id)
+                .model("M" + id)
+                .serialPrefix(prefix)
+                .fromSerialNumber(from)
+                .toSerialNumber(to)
+                .warrantyMonths(24)
+                .build();
+    }
+}
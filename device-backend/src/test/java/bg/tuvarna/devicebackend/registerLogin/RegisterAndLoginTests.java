@@ -1,8 +1,10 @@
 package bg.tuvarna.devicebackend.registerLogin;
 
 import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.Renovation;
 import bg.tuvarna.devicebackend.repositories.DeviceRepository;
 import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.repositories.RenovationRepository;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -36,10 +38,14 @@ class RegisterAndLoginTests {
     @Autowired
     private DeviceRepository deviceRepository;
 
+    @Autowired
+    private RenovationRepository renovationRepository;
+
     private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
 
     @BeforeEach
     void setUp() {
+        renovationRepository.deleteAll();
         deviceRepository.deleteAll();
         userRepository.deleteAll();
         passportRepository.deleteAll();
@@ -119,6 +125,53 @@ class RegisterAndLoginTests {
         assertEquals("test.user@mail.com", json.get("user").get("email").asText());
     }
 
+    @Test
+    void userLoginSuccess_shouldReturnDeviceRenovations() throws Exception {
+        registerDefaultUser();
+
+        Renovation renovation = new Renovation();
+        renovation.setDevice(deviceRepository.findById("ABC100").orElseThrow());
+        renovation.setDescription("Replaced pump");
+        renovation.setRenovationDate(LocalDate.of(2025, 6, 1));
+        renovationRepository.save(renovation);
+
+        ResponseEntity<String> res = rest.postForEntity(
+                "/api/v1/users/login",
+                jsonEntity(Map.of(
+                        "username", "test.user@mail.com",
+                        "password", "Password1"
+                )),
+                String.class
+        );
+
+        assertEquals(HttpStatus.OK, res.getStatusCode());
+        JsonNode device = objectMapper.readTree(res.getBody()).get("user").get("devices").get(0);
+        assertEquals("ABC100", device.get("serialNumber").asText());
+        assertEquals("Replaced pump", device.get("renovations").get(0).get("description").asText());
+    }
+
+    @Test
+    void userLoginSuccess_shouldReturnFullDevicePassport() throws Exception {
+        registerDefaultUser();
+
+        ResponseEntity<String> res = rest.postForEntity(
+                "/api/v1/users/login",
+                jsonEntity(Map.of(
+                        "username", "test.user@mail.com",
+                        "password", "Password1"
+                )),
+                String.class
+        );
+
+        assertEquals(HttpStatus.OK, res.getStatusCode());
+        JsonNode passport = objectMapper.readTree(res.getBody()).get("user").get("devices").get(0).get("passport");
+        assertEquals("TestPassport", passport.get("name").asText());
+        assertEquals("ABC", passport.get("serialPrefix").asText());
+        assertEquals(1, passport.get("fromSerialNumber").asLong());
+        assertEquals(9999, passport.get("toSerialNumber").asLong());
+        assertEquals(24, passport.get("warrantyMonths").asInt());
+    }
+
     @Test
     void userLoginFailed_shouldThrowResourceAccessException_whenWrongPassword() {
         registerDefaultUser();
@@ -203,6 +256,47 @@ class RegisterAndLoginTests {
         assertEquals(HttpStatus.OK, res.getStatusCode());
     }
 
+    @Test
+    void refreshToken_shouldRotate_andRevokeSession_whenReused() throws Exception {
+        registerDefaultUser();
+
+        ResponseEntity<String> loginRes = rest.postForEntity(
+                "/api/v1/users/login",
+                jsonEntity(Map.of(
+                        "username", "test.user@mail.com",
+                        "password", "Password1"
+                )),
+                String.class
+        );
+        String refreshToken = objectMapper.readTree(loginRes.getBody()).get("refreshToken").asText();
+
+        ResponseEntity<String> refreshRes = rest.postForEntity(
+                "/api/v1/users/refresh",
+                jsonEntity(Map.of("refreshToken", refreshToken)),
+                String.class
+        );
+
+        assertEquals(HttpStatus.OK, refreshRes.getStatusCode());
+        JsonNode json = objectMapper.readTree(refreshRes.getBody());
+        assertTrue(json.hasNonNull("token"));
+        String rotatedToken = json.get("refreshToken").asText();
+        assertNotEquals(refreshToken, rotatedToken);
+
+        ResponseEntity<String> reuseRes = rest.postForEntity(
+                "/api/v1/users/refresh",
+                jsonEntity(Map.of("refreshToken", refreshToken)),
+                String.class
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, reuseRes.getStatusCode());
+
+        ResponseEntity<String> revokedRes = rest.postForEntity(
+                "/api/v1/users/refresh",
+                jsonEntity(Map.of("refreshToken", rotatedToken)),
+                String.class
+        );
+        assertEquals(HttpStatus.BAD_REQUEST, revokedRes.getStatusCode());
+    }
+
     private void registerDefaultUser() {
         ResponseEntity<Void> res = rest.postForEntity(
                 "/api/v1/users/registration",
@@ -0,0 +1,51 @@
+package bg.tuvarna.devicebackend.uapi;
+
+import bg.tuvarna.devicebackend.controllers.DeviceController;
+import bg.tuvarna.devicebackend.controllers.execptions.CustomExceptionHandler;
+import bg.tuvarna.devicebackend.models.dtos.DeviceStatisticsVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportStatisticsVO;
+import bg.tuvarna.devicebackend.services.DeviceBulkService;
+import bg.tuvarna.devicebackend.services.DeviceService;
+import bg.tuvarna.devicebackend.services.DeviceStatisticsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class DeviceApiTests {
+
+    private MockMvc mockMvc;
+    private DeviceStatisticsService deviceStatisticsService;
+
+    @BeforeEach
+    void setUp() {
+        deviceStatisticsService = mock(DeviceStatisticsService.class);
+
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new DeviceController(mock(DeviceService.class), mock(DeviceBulkService.class), deviceStatisticsService))
+                .setControllerAdvice(new CustomExceptionHandler())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(new ObjectMapper().findAndRegisterModules()))
+                .build();
+    }
+
+    @Test
+    void getStatistics_shouldReturnTotalsAndPassports() throws Exception {
+        when(deviceStatisticsService.getStatistics()).thenReturn(new DeviceStatisticsVO(5, 3, 2, 4, 1,
+                List.of(new PassportStatisticsVO(1L, "Washer", "W1", 5, 3, 4))));
+
+        mockMvc.perform(get("/api/v1/devices/statistics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.devices").value(5))
+                .andExpect(jsonPath("$.anonymous").value(2))
+                .andExpect(jsonPath("$.passports[0].name").value("Washer"))
+                .andExpect(jsonPath("$.passports[0].inWarranty").value(4));
+    }
+}
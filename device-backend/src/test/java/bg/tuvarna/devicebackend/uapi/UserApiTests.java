@@ -2,6 +2,7 @@ package bg.tuvarna.devicebackend.uapi;
 
 import bg.tuvarna.devicebackend.controllers.UserController;
 import bg.tuvarna.devicebackend.controllers.execptions.CustomExceptionHandler;
+import bg.tuvarna.devicebackend.controllers.execptions.ServiceBusyException;
 import bg.tuvarna.devicebackend.services.UserService;
 import bg.tuvarna.devicebackend.utils.CustomPage;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -65,6 +66,28 @@ class UserApiTests {
         verify(userService, times(1)).register(any());
     }
 
+    @Test
+    void userRegistration_shouldReturnServiceUnavailable_whenHashingQueueFull() throws Exception {
+        doThrow(new ServiceBusyException("Too many password operations in progress")).when(userService).register(any());
+
+        Map<String, Object> body = Map.of(
+                "fullName", "Test User",
+                "password", "Password1",
+                "email", "test.user@mail.com",
+                "phone", "0888123456",
+                "address", "Varna",
+                "purchaseDate", LocalDate.of(2025, 1, 10).toString(),
+                "deviceSerialNumber", "ABC100"
+        );
+
+        mockMvc.perform(post("/api/v1/users/registration")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(body)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.errorCode").value(6));
+    }
+
     @Test
     void userRegistration_shouldReturnBadRequest_whenValidationFails() throws Exception {
         Map<String, Object> invalid = Map.of(
@@ -0,0 +1,120 @@
+package bg.tuvarna.devicebackend.urepo;
+
+import bg.tuvarna.devicebackend.models.dtos.DeviceStatisticsVO;
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.DeviceStatistic;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.services.DeviceStatisticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class DeviceStatisticsRepoTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PassportRepository passportRepository;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private DeviceStatisticsService deviceStatisticsService;
+    private Passport passport;
+
+    @BeforeEach
+    void setUp() {
+        deviceStatisticsService = new DeviceStatisticsService(jdbcTemplate);
+        passport = passportRepository.saveAndFlush(Passport.builder()
+                .name("Washer")
+                .model("W1")
+                .serialPrefix("ABC")
+                .fromSerialNumber(1)
+                .toSerialNumber(999)
+                .warrantyMonths(24)
+                .build());
+    }
+
+    @Test
+    void added_shouldCountDevicesPerKey() {
+        Device inWarranty = device("ABC1", null, LocalDate.now().plusDays(10));
+        Device expired = device("ABC2", null, LocalDate.now().minusDays(1));
+
+        deviceStatisticsService.added(inWarranty);
+        deviceStatisticsService.addedAll(List.of(inWarranty, expired));
+
+        DeviceStatisticsVO statistics = deviceStatisticsService.getStatistics();
+        assertEquals(3, statistics.devices());
+        assertEquals(3, statistics.anonymous());
+        assertEquals(2, statistics.inWarranty());
+        assertEquals(1, statistics.outOfWarranty());
+        assertEquals(passport.getId(), statistics.passports().get(0).passportId());
+    }
+
+    @Test
+    void movedAndRemoved_shouldApplyDeltas_andNeverCreateNegativeRows() {
+        LocalDate expiration = LocalDate.now().plusDays(10);
+        Device device = device("ABC1", null, expiration);
+        DeviceStatistic.Key registered = new DeviceStatistic.Key(passport.getId(), true, expiration);
+
+        deviceStatisticsService.added(device);
+        deviceStatisticsService.moved(DeviceStatisticsService.keyOf(device), registered);
+        assertEquals(1, deviceStatisticsService.getStatistics().registered());
+        assertEquals(0, deviceStatisticsService.getStatistics().anonymous());
+
+        deviceStatisticsService.removed(registered);
+        deviceStatisticsService.removed(new DeviceStatistic.Key(passport.getId(), false, LocalDate.now()));
+        assertEquals(0, deviceStatisticsService.getStatistics().devices());
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from device_statistics where device_count < 0", Long.class));
+    }
+
+    @Test
+    void reconcile_shouldRecomputeFromDevices() {
+        User user = new User();
+        user.setFullName("Ivan");
+        user.setEmail("ivan@mail.com");
+        user.setPhone("0888000001");
+        user.setPassword("x");
+        user.setRole(UserRole.USER);
+        userRepository.saveAndFlush(user);
+        deviceRepository.saveAndFlush(device("ABC1", user, LocalDate.now().plusDays(10)));
+        deviceRepository.saveAndFlush(device("ABC2", null, LocalDate.now().minusDays(10)));
+        deviceStatisticsService.added(device("ABC3", null, LocalDate.now()));
+
+        deviceStatisticsService.reconcile();
+
+        DeviceStatisticsVO statistics = deviceStatisticsService.getStatistics();
+        assertEquals(2, statistics.devices());
+        assertEquals(1, statistics.registered());
+        assertEquals(1, statistics.inWarranty());
+    }
+
+    private Device device(String serialNumber, User user, LocalDate warrantyExpirationDate) {
+        Device device = new Device();
+        device.setSerialNumber(serialNumber);
+        device.setPassport(passport);
+        device.setUser(user);
+        device.setPurchaseDate(LocalDate.now().minusYears(1));
+        device.setWarrantyExpirationDate(warrantyExpirationDate);
+        return device;
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -84,7 +85,7 @@ class UserRepoTests {
     }
 
     @Test
-    void getAllUsers_shouldExcludeAdmins() {
+    void searchPageIds_shouldExcludeAdmins() {
         User admin = new User();
         admin.setFullName("Admin");
         admin.setEmail("admin@mail.com");
@@ -102,13 +103,13 @@ class UserRepoTests {
         userRepository.save(admin);
         userRepository.save(user);
 
-        var page = userRepository.getAllUsers(PageRequest.of(0, 10));
-        assertEquals(1, page.getTotalElements());
-        assertEquals("user@mail.com", page.getContent().get(0).getEmail());
+        var ids = userRepository.searchPageIds(null, PageRequest.of(0, 10));
+        assertEquals(List.of(user.getId()), ids);
+        assertEquals(1, userRepository.countBySearch(null));
     }
 
     @Test
-    void searchBy_shouldReturnUser_whenMatchByDeviceSerial() {
+    void searchPageIds_shouldReturnUser_whenMatchByDeviceSerial() {
         Passport p = Passport.builder()
                 .name("TestPassport")
                 .model("M1")
@@ -135,8 +136,35 @@ class UserRepoTests {
         d.setWarrantyExpirationDate(LocalDate.of(2027, 1, 1));
         deviceRepository.save(d);
 
-        var page = userRepository.searchBy("ABC100", PageRequest.of(0, 10));
-        assertEquals(1, page.getTotalElements());
-        assertEquals("petar@mail.com", page.getContent().get(0).getEmail());
+        var ids = userRepository.searchPageIds("ABC100", PageRequest.of(0, 10));
+        assertEquals(List.of(user.getId()), ids);
+        assertEquals(1, userRepository.countBySearch("ABC100"));
+    }
+
+    @Test
+    void findIdsAfter_shouldReturnIdsAfterIdInOrder() {
+        User first = new User();
+        first.setFullName("First");
+        first.setEmail("first@mail.com");
+        first.setPhone("333");
+        first.setPassword("x");
+        first.setRole(UserRole.USER);
+        first = userRepository.save(first);
+
+        User second = new User();
+        second.setFullName("Second");
+        second.setEmail("second@mail.com");
+        second.setPhone("444");
+        second.setPassword("x");
+        second.setRole(UserRole.USER);
+        second = userRepository.save(second);
+
+        var firstPage = userRepository.findIdsAfter(null, 0L, PageRequest.of(0, 1));
+        assertEquals(1, firstPage.size());
+        assertEquals(first.getId(), firstPage.get(0));
+
+        var nextPage = userRepository.findIdsAfter(null, first.getId(), PageRequest.of(0, 10));
+        assertEquals(1, nextPage.size());
+        assertEquals(second.getId(), nextPage.get(0));
     }
 }
@@ -0,0 +1,165 @@
+package bg.tuvarna.devicebackend.urepo;
+
+import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
+import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
+import bg.tuvarna.devicebackend.models.entities.Device;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.entities.WarrantyExpiryReport;
+import bg.tuvarna.devicebackend.models.enums.ReportDimension;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.DeviceRepository;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import bg.tuvarna.devicebackend.repositories.WarrantyExpiryReportRepository;
+import bg.tuvarna.devicebackend.services.WarrantyReportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the report aggregates on its own threads, so the data has to be committed instead of kept in a test transaction
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class WarrantyReportRepoTests {
+    private static final LocalDate REPORT_DATE = LocalDate.of(2026, 3, 1);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private WarrantyExpiryReportRepository warrantyExpiryReportRepository;
+
+    @Autowired
+    private PassportRepository passportRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    private WarrantyReportService warrantyReportService;
+    private Passport passport;
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        warrantyReportService = new WarrantyReportService(jdbcTemplate, new TransactionTemplate(transactionManager), warrantyExpiryReportRepository);
+        ReflectionTestUtils.setField(warrantyReportService, "windowDays", 30);
+
+        passport = passportRepository.save(Passport.builder()
+                .name("Washer")
+                .model("W1")
+                .serialPrefix("ABC")
+                .fromSerialNumber(1)
+                .toSerialNumber(999)
+                .warrantyMonths(24)
+                .build());
+
+        owner = new User();
+        owner.setFullName("Ivan");
+        owner.setEmail("ivan@mail.com");
+        owner.setPhone("0888000001");
+        owner.setPassword("x");
+        owner.setRole(UserRole.USER);
+        owner = userRepository.save(owner);
+    }
+
+    @AfterEach
+    void tearDown() {
+        warrantyExpiryReportRepository.deleteAll();
+        deviceRepository.deleteAll();
+        userRepository.deleteAll();
+        passportRepository.deleteAll();
+    }
+
+    @Test
+    void getLatestReport_shouldThrow_whenNoReportGenerated() {
+        CustomException ex = assertThrows(CustomException.class, () -> warrantyReportService.getLatestReport(ReportDimension.PASSPORT));
+        assertEquals(ErrorCode.EntityNotFound, ex.getErrorCode());
+    }
+
+    @Test
+    void generateReport_shouldCountOnlyWarrantiesInsideWindow() {
+        saveDevice("ABC1", owner, REPORT_DATE);
+        saveDevice("ABC2", owner, REPORT_DATE.plusDays(29));
+        saveDevice("ABC3", null, REPORT_DATE.plusDays(10));
+        // windowEnd is exclusive, a 30-day window covers 30 days
+        saveDevice("ABC4", owner, REPORT_DATE.plusDays(30));
+        saveDevice("ABC5", owner, REPORT_DATE.minusDays(1));
+
+        warrantyReportService.generateReport(REPORT_DATE);
+
+        List<WarrantyExpiryReport> byPassport = warrantyReportService.getLatestReport(ReportDimension.PASSPORT);
+        assertEquals(1, byPassport.size());
+        assertEquals(passport.getId(), byPassport.get(0).getDimensionId());
+        assertEquals(3, byPassport.get(0).getDeviceCount());
+        assertEquals(REPORT_DATE.plusDays(30), byPassport.get(0).getWindowEnd());
+
+        List<WarrantyExpiryReport> byOwner = warrantyReportService.getLatestReport(ReportDimension.OWNER);
+        assertEquals(1, byOwner.size());
+        assertEquals("ivan@mail.com", byOwner.get(0).getLabel());
+        assertEquals(2, byOwner.get(0).getDeviceCount());
+    }
+
+    @Test
+    void generateReport_shouldReplaceReportOfSameDay_andServeLatestDay() {
+        saveDevice("ABC1", owner, REPORT_DATE.plusDays(1));
+
+        warrantyReportService.generateReport(REPORT_DATE.minusDays(1));
+        warrantyReportService.generateReport(REPORT_DATE);
+        warrantyReportService.generateReport(REPORT_DATE);
+
+        assertEquals(4, warrantyExpiryReportRepository.count());
+        List<WarrantyExpiryReport> latest = warrantyReportService.getLatestReport(ReportDimension.PASSPORT);
+        assertEquals(1, latest.size());
+        assertEquals(REPORT_DATE, latest.get(0).getReportDate());
+    }
+
+    @Test
+    void reportKey_shouldRejectDuplicateRow() {
+        warrantyExpiryReportRepository.save(reportRow());
+
+        assertThrows(DataIntegrityViolationException.class, () -> warrantyExpiryReportRepository.save(reportRow()));
+    }
+
+    private WarrantyExpiryReport reportRow() {
+        return WarrantyExpiryReport.builder()
+                .reportDate(REPORT_DATE)
+                .windowEnd(REPORT_DATE.plusDays(30))
+                .dimension(ReportDimension.PASSPORT)
+                .dimensionId(passport.getId())
+                .label("Washer W1")
+                .deviceCount(1)
+                .build();
+    }
+
+    private void saveDevice(String serialNumber, User user, LocalDate warrantyExpirationDate) {
+        Device device = new Device();
+        device.setSerialNumber(serialNumber);
+        device.setPassport(passport);
+        device.setUser(user);
+        device.setPurchaseDate(warrantyExpirationDate.minusYears(2));
+        device.setWarrantyExpirationDate(warrantyExpirationDate);
+        deviceRepository.save(device);
+    }
+}
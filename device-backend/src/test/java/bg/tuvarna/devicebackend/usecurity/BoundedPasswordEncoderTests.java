@@ -0,0 +1,103 @@
+package bg.tuvarna.devicebackend.usecurity;
+
+import bg.tuvarna.devicebackend.config.BoundedPasswordEncoder;
+import bg.tuvarna.devicebackend.config.PrincipalCache;
+import bg.tuvarna.devicebackend.config.UserDetailsServiceConfig;
+import bg.tuvarna.devicebackend.controllers.execptions.ServiceBusyException;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTests {
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) {
+            encoder.destroy();
+        }
+    }
+
+    @Test
+    void upgradeEncoding_shouldReportAnyOtherCost() {
+        encoder = new BoundedPasswordEncoder(5, 4);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("Password1")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("Password1")));
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("Password1")));
+        assertFalse(encoder.upgradeEncoding("not-a-bcrypt-hash"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void encode_shouldThrowServiceBusy_whenQueueFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "HASH";
+        });
+        encoder = new BoundedPasswordEncoder(delegate, 10, 1, 1);
+
+        Thread running = new Thread(() -> encoder.encode("first"));
+        running.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Thread queued = new Thread(() -> encoder.encode("second"));
+        queued.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        ServiceBusyException ex = assertThrows(ServiceBusyException.class, () -> encoder.encode("third"));
+        assertEquals("Too many password operations in progress", ex.getMessage());
+
+        release.countDown();
+        running.join(5000);
+        queued.join(5000);
+        verify(delegate, times(2)).encode(any());
+    }
+
+    @Test
+    void authenticate_shouldRehashPassword_whenStoredCostDiffers() {
+        encoder = new BoundedPasswordEncoder(5, 4);
+        UserRepository userRepository = mock(UserRepository.class);
+
+        User user = new User();
+        user.setId(7L);
+        user.setEmail("test.user@mail.com");
+        user.setPassword(new BCryptPasswordEncoder(4).encode("Password1"));
+        user.setRole(UserRole.USER);
+        when(userRepository.findForLogin("test.user@mail.com")).thenReturn(Optional.of(user));
+
+        UserDetailsServiceConfig userDetailsService = new UserDetailsServiceConfig(userRepository, new PrincipalCache(true, Duration.ofSeconds(30), 100));
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService);
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsPasswordService(userDetailsService);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("test.user@mail.com", "Password1"));
+
+        verify(userRepository).updatePassword(eq(7L), startsWith("$2a$05$"));
+        assertTrue(user.getPassword().startsWith("$2a$05$"));
+    }
+}
@@ -0,0 +1,176 @@
+package bg.tuvarna.devicebackend.usecurity;
+
+import bg.tuvarna.devicebackend.config.JwtAuthenticationFilter;
+import bg.tuvarna.devicebackend.config.JwtKeySet;
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.config.PrincipalCache;
+import bg.tuvarna.devicebackend.config.UserDetailsServiceConfig;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import bg.tuvarna.devicebackend.repositories.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTests {
+
+    private JwtService jwtService;
+    private UserDetailsServiceConfig userDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        JwtKeySet keySet = new JwtKeySet(new DefaultResourceLoader(), new ObjectMapper(), "", Duration.ofHours(2));
+        jwtService = new JwtService(keySet, Duration.ofHours(2), 16);
+        userDetailsService = mock(UserDetailsServiceConfig.class);
+        when(userDetailsService.loadUserById(anyString())).thenAnswer(invocation -> user(Long.valueOf(invocation.getArgument(0))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void filter_shouldBuildPrincipalFromClaims_whenCacheDisabled() throws Exception {
+        JwtAuthenticationFilter filter = filter(new PrincipalCache(false, Duration.ofSeconds(30), 100));
+
+        MockHttpServletResponse response = run(filter, "/api/v1/users/getUser", jwtService.generateToken(user(1L)));
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        User principal = (User) authentication().getPrincipal();
+        assertEquals(1L, principal.getId());
+        assertEquals("user1@mail.com", principal.getEmail());
+        assertEquals(UserRole.USER.name(), authentication().getAuthorities().iterator().next().getAuthority());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void filter_shouldLoadUser_whenTokenHasNoRoleClaim() throws Exception {
+        JwtAuthenticationFilter filter = filter(new PrincipalCache(false, Duration.ofSeconds(30), 100));
+
+        run(filter, "/api/v1/users/getUser", jwtService.generateToken(Map.of(), user(1L)));
+
+        assertEquals(1L, ((User) authentication().getPrincipal()).getId());
+        verify(userDetailsService).loadUserById("1");
+    }
+
+    @Test
+    void filter_shouldLoadUserOncePerTtl_andAgainAfterInvalidate() throws Exception {
+        PrincipalCache principalCache = new PrincipalCache(true, Duration.ofMinutes(1), 100);
+        JwtAuthenticationFilter filter = filter(principalCache);
+        String token = jwtService.generateToken(user(1L));
+
+        run(filter, "/api/v1/users/getUser", token);
+        SecurityContextHolder.clearContext();
+        run(filter, "/api/v1/users/getUser", token);
+        verify(userDetailsService, times(1)).loadUserById("1");
+
+        principalCache.invalidate(1L);
+        SecurityContextHolder.clearContext();
+        run(filter, "/api/v1/users/getUser", token);
+        verify(userDetailsService, times(2)).loadUserById("1");
+    }
+
+    @Test
+    void filter_shouldReject_whenTokenInvalidOnProtectedPath() throws Exception {
+        JwtAuthenticationFilter filter = filter(new PrincipalCache(false, Duration.ofSeconds(30), 100));
+
+        MockHttpServletResponse response = run(filter, "/api/v1/users/getUser", "not-a-jwt");
+
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, response.getStatus());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void filter_shouldSkipToken_onPublicPaths() throws Exception {
+        JwtAuthenticationFilter filter = filter(new PrincipalCache(false, Duration.ofSeconds(30), 100));
+
+        for (String path : new String[]{"/api/v1/users/login", "/api/v1/passports/getBySerialId/ABC1", "/api/v1/devices/exists/ABC1", "/.well-known/jwks.json"}) {
+            MockHttpServletResponse response = run(filter, path, "not-a-jwt");
+            assertEquals(HttpServletResponse.SC_OK, response.getStatus(), path);
+        }
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
+    @Test
+    void principalCache_shouldReload_afterTtl() {
+        PrincipalCache principalCache = new PrincipalCache(true, Duration.ZERO, 100);
+        AtomicInteger loads = new AtomicInteger();
+
+        principalCache.get(1L, () -> user(loads.incrementAndGet()));
+        principalCache.get(1L, () -> user(loads.incrementAndGet()));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void principalCache_shouldEvict_whenFull() {
+        PrincipalCache principalCache = new PrincipalCache(true, Duration.ofMinutes(1), 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (long id : new long[]{1, 2, 3, 1}) {
+            principalCache.get(id, () -> {
+                loads.incrementAndGet();
+                return user(id);
+            });
+        }
+
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void updatePassword_shouldInvalidateCachedPrincipal() {
+        PrincipalCache principalCache = new PrincipalCache(true, Duration.ofMinutes(1), 100);
+        UserDetailsServiceConfig config = new UserDetailsServiceConfig(mock(UserRepository.class), principalCache);
+        User cached = user(1L);
+        principalCache.get(1L, () -> cached);
+
+        config.updatePassword(cached, "NEW_HASH");
+
+        User reloaded = user(1L);
+        assertSame(reloaded, principalCache.get(1L, () -> reloaded));
+    }
+
+    private JwtAuthenticationFilter filter(PrincipalCache principalCache) {
+        return new JwtAuthenticationFilter(jwtService, userDetailsService, principalCache);
+    }
+
+    private static MockHttpServletResponse run(JwtAuthenticationFilter filter, String path, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private static Authentication authentication() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertNotNull(authentication);
+        return authentication;
+    }
+
+    private static User user(long id) {
+        return User.builder()
+                .id(id)
+                .email("user" + id + "@mail.com")
+                .role(UserRole.USER)
+                .build();
+    }
+}
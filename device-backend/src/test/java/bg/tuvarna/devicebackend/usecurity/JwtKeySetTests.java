@@ -0,0 +1,195 @@
+package bg.tuvarna.devicebackend.usecurity;
+
+import bg.tuvarna.devicebackend.config.JwtKeySet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtKeySetTests {
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Path keySetFile;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keySetFile = dir.resolve("jwks.json");
+        now = Instant.now();
+        // rsa is the previous key, ec the active one and the hmac key is published ahead of time
+        writeKeys(rsaJwk("rsa", now.minus(Duration.ofDays(1))),
+                ecJwk("ec", now.minus(Duration.ofHours(1))),
+                hmacJwk("hmac", now.plus(Duration.ofDays(1))));
+    }
+
+    @Test
+    void signingKey_shouldPickNewestKeyWhoseNbfPassed() {
+        JwtKeySet keySet = keySet(new DefaultResourceLoader(), Duration.ofHours(2));
+
+        assertEquals("ec", keySet.signingKey().kid());
+    }
+
+    @Test
+    void verificationKey_shouldKeepPreviousKey_untilSuccessorActiveForOneTtl() {
+        assertNotNull(keySet(new DefaultResourceLoader(), Duration.ofHours(2)).verificationKey("rsa", "RS256"));
+
+        JwtKeySet shortTtl = keySet(new DefaultResourceLoader(), Duration.ofMinutes(30));
+        assertNull(shortTtl.verificationKey("rsa", "RS256"));
+        assertNotNull(shortTtl.verificationKey("ec", "ES256"));
+    }
+
+    @Test
+    void verificationKey_shouldReturnNull_whenAlgorithmDiffers() {
+        JwtKeySet keySet = keySet(new DefaultResourceLoader(), Duration.ofHours(2));
+
+        assertNull(keySet.verificationKey("ec", "RS256"));
+        assertNull(keySet.verificationKey("rsa", "HS256"));
+        assertNull(keySet.verificationKey(null, "RS256"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publicKeySet_shouldPublishOnlyPublicParts_andSkipHmac() {
+        JwtKeySet keySet = keySet(new DefaultResourceLoader(), Duration.ofHours(2));
+
+        List<Map<String, Object>> keys = (List<Map<String, Object>>) keySet.publicKeySet().get("keys");
+        assertEquals(List.of("rsa", "ec"), keys.stream().map(key -> key.get("kid")).toList());
+        keys.forEach(key -> {
+            assertFalse(key.containsKey("d"));
+            assertFalse(key.containsKey("k"));
+        });
+    }
+
+    @Test
+    void verificationKey_shouldReloadOnce_whenManyThreadsSeeUnknownKid() throws Exception {
+        ResourceLoader resourceLoader = spy(new DefaultResourceLoader());
+        JwtKeySet keySet = keySet(resourceLoader, Duration.ofHours(2));
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    return keySet.verificationKey("unknown", "RS256");
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        // one read at startup and a single rate limited reload
+        verify(resourceLoader, times(2)).getResource(anyString());
+    }
+
+    @Test
+    void verificationKey_shouldPickUpKeyPublishedAfterStartup() throws Exception {
+        JwtKeySet keySet = keySet(new DefaultResourceLoader(), Duration.ofHours(2));
+        Map<String, Object> rotated = hmacJwk("rotated", now.minus(Duration.ofMinutes(1)));
+        writeKeys(ecJwk("ec", now.minus(Duration.ofHours(1))), rotated);
+
+        assertNotNull(keySet.verificationKey("rotated", "HS256"));
+        assertEquals("rotated", keySet.signingKey().kid());
+    }
+
+    private JwtKeySet keySet(ResourceLoader resourceLoader, Duration accessTokenTtl) {
+        return new JwtKeySet(resourceLoader, objectMapper, keySetFile.toUri().toString(), accessTokenTtl);
+    }
+
+    @SafeVarargs
+    private void writeKeys(Map<String, Object>... jwks) throws IOException {
+        Files.writeString(keySetFile, objectMapper.writeValueAsString(Map.of("keys", new ArrayList<>(List.of(jwks)))));
+    }
+
+    private static Map<String, Object> rsaJwk(String kid, Instant notBefore) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair pair = generator.generateKeyPair();
+        RSAPublicKey publicKey = (RSAPublicKey) pair.getPublic();
+
+        Map<String, Object> jwk = jwk("RSA", kid, notBefore);
+        jwk.put("alg", "RS256");
+        jwk.put("n", encode(publicKey.getModulus()));
+        jwk.put("e", encode(publicKey.getPublicExponent()));
+        jwk.put("d", encode(((RSAPrivateKey) pair.getPrivate()).getPrivateExponent()));
+        return jwk;
+    }
+
+    private static Map<String, Object> ecJwk(String kid, Instant notBefore) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair pair = generator.generateKeyPair();
+        ECPublicKey publicKey = (ECPublicKey) pair.getPublic();
+
+        Map<String, Object> jwk = jwk("EC", kid, notBefore);
+        jwk.put("crv", "P-256");
+        jwk.put("x", encode(publicKey.getW().getAffineX()));
+        jwk.put("y", encode(publicKey.getW().getAffineY()));
+        jwk.put("d", encode(((ECPrivateKey) pair.getPrivate()).getS()));
+        return jwk;
+    }
+
+    private static Map<String, Object> hmacJwk(String kid, Instant notBefore) {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+
+        Map<String, Object> jwk = jwk("oct", kid, notBefore);
+        jwk.put("alg", "HS256");
+        jwk.put("k", Base64.getUrlEncoder().withoutPadding().encodeToString(secret));
+        return jwk;
+    }
+
+    private static Map<String, Object> jwk(String kty, String kid, Instant notBefore) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", kty);
+        jwk.put("kid", kid);
+        jwk.put("nbf", notBefore.getEpochSecond());
+        return jwk;
+    }
+
+    private static String encode(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
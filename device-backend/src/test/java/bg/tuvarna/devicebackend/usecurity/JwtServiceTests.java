@@ -0,0 +1,90 @@
+package bg.tuvarna.devicebackend.usecurity;
+
+import bg.tuvarna.devicebackend.config.JwtKeySet;
+import bg.tuvarna.devicebackend.config.JwtService;
+import bg.tuvarna.devicebackend.config.VerifiedToken;
+import bg.tuvarna.devicebackend.models.entities.User;
+import bg.tuvarna.devicebackend.models.enums.UserRole;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTests {
+
+    @TempDir
+    Path dir;
+
+    private Path keySetFile;
+    private JwtKeySet keySet;
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        keySetFile = dir.resolve("jwks.json");
+        writeHmacKey("first");
+        keySet = new JwtKeySet(new DefaultResourceLoader(), new ObjectMapper(), keySetFile.toUri().toString(), Duration.ofHours(2));
+        jwtService = new JwtService(keySet, Duration.ofHours(2), 16);
+    }
+
+    @Test
+    void verify_shouldReturnClaims_andServeRepeatsFromCache() {
+        String token = jwtService.generateToken(user());
+
+        VerifiedToken verified = jwtService.verify(token);
+        assertEquals(1L, verified.userId());
+        assertEquals(UserRole.USER, verified.role());
+        assertSame(verified, jwtService.verify(token));
+    }
+
+    @Test
+    void verify_shouldRejectCachedToken_whenSigningKeyRemoved() throws IOException {
+        String token = jwtService.generateToken(user());
+        assertNotNull(jwtService.verify(token));
+
+        writeHmacKey("second");
+        keySet.refresh();
+
+        assertThrows(SignatureException.class, () -> jwtService.verify(token));
+    }
+
+    @Test
+    void verify_shouldKeepCacheBounded() {
+        JwtService smallCache = new JwtService(keySet, Duration.ofHours(2), 1);
+        String first = smallCache.generateToken(user());
+        String second = smallCache.generateToken(User.builder().id(2L).role(UserRole.USER).build());
+
+        VerifiedToken verified = smallCache.verify(first);
+        assertEquals(2L, smallCache.verify(second).userId());
+
+        VerifiedToken reverified = smallCache.verify(first);
+        assertNotSame(verified, reverified);
+        assertEquals(verified, reverified);
+    }
+
+    private void writeHmacKey(String kid) throws IOException {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        Files.writeString(keySetFile, "{\"keys\":[{\"kty\":\"oct\",\"kid\":\"" + kid + "\",\"alg\":\"HS256\",\"k\":\""
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(secret) + "\"}]}");
+    }
+
+    private static User user() {
+        return User.builder()
+                .id(1L)
+                .email("test.user@mail.com")
+                .role(UserRole.USER)
+                .build();
+    }
+}
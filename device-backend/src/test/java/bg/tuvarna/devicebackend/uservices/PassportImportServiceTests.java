@@ -0,0 +1,133 @@
+package bg.tuvarna.devicebackend.uservices;
+
+import bg.tuvarna.devicebackend.indexes.PassportSerialIndex;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportErrorVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportResultVO;
+import bg.tuvarna.devicebackend.models.dtos.PassportImportRow;
+import bg.tuvarna.devicebackend.models.dtos.PassportVO;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.PassportBatchRepository;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.services.PassportImportService;
+import bg.tuvarna.devicebackend.services.PassportLookupCache;
+import bg.tuvarna.devicebackend.services.PassportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PassportImportServiceTests {
+
+    @Mock
+    private PassportRepository passportRepository;
+
+    @Mock
+    private PassportBatchRepository passportBatchRepository;
+
+    private PassportSerialIndex passportSerialIndex;
+    private PassportService passportService;
+    private PassportImportService passportImportService;
+
+    @BeforeEach
+    void setUp() {
+        passportSerialIndex = new PassportSerialIndex();
+        passportService = new PassportService(passportRepository, passportBatchRepository, passportSerialIndex,
+                new PassportLookupCache(Duration.ofMinutes(1), Duration.ofSeconds(10), 100));
+        passportImportService = new PassportImportService(passportService, new ObjectMapper());
+    }
+
+    @Test
+    void importPassports_shouldImportCsvAndReportMalformedRows() {
+        assignIdsOnInsert();
+        String csv = """
+                name,model,serialPrefix,warrantyMonths,fromSerialNumber,toSerialNumber
+                "Washer, big",W1,ABC,24,1,999
+                Dryer,D1,ABC,24,x,5
+                Oven,O1,OV,12,-5,10
+                """;
+
+        PassportImportResultVO result = passportImportService.importPassports(stream(csv), true);
+
+        assertEquals(1, result.imported());
+        assertEquals(List.of(3L, 4L), result.errors().stream().map(PassportImportErrorVO::line).toList());
+        assertEquals("Washer, big", passportSerialIndex.find("ABC5").orElseThrow().getName());
+    }
+
+    @Test
+    void importPassports_shouldImportNdjson() {
+        assignIdsOnInsert();
+        String ndjson = """
+                {"name":"Washer","model":"W1","serialPrefix":"ABC","warrantyMonths":24,"fromSerialNumber":1,"toSerialNumber":999}
+
+                {"name":"Dryer"
+                """;
+
+        PassportImportResultVO result = passportImportService.importPassports(stream(ndjson), false);
+
+        assertEquals(1, result.imported());
+        assertEquals(1, result.failed());
+        assertEquals(3L, result.errors().get(0).line());
+    }
+
+    @Test
+    void importChunk_shouldRejectInvalidAndOverlappingRanges() {
+        assignIdsOnInsert();
+        passportSerialIndex.put(Passport.builder().id(100L).serialPrefix("ABC").fromSerialNumber(1).toSerialNumber(999).build());
+        List<PassportImportErrorVO> errors = new ArrayList<>();
+
+        int imported = passportService.importChunk(List.of(
+                row(1, "ABC", 500, 1500),
+                row(2, "ABC", 1000, 1999),
+                row(3, "ABC", 1500, 2500),
+                row(4, "XYZ", -10, 5),
+                row(5, "XYZ", 10, 5)
+        ), errors);
+
+        assertEquals(1, imported);
+        assertEquals(List.of(1L, 3L, 4L, 5L), errors.stream().map(PassportImportErrorVO::line).toList());
+        assertEquals(2, passportSerialIndex.find("ABC1000").orElseThrow().getId());
+    }
+
+    @Test
+    void importChunk_shouldReportWholeChunk_whenInsertFails() {
+        doThrow(new RuntimeException("insert failed")).when(passportBatchRepository).insertAll(anyList());
+        List<PassportImportErrorVO> errors = new ArrayList<>();
+
+        int imported = passportService.importChunk(List.of(row(1, "ABC", 1, 10), row(2, "ABC", 11, 20)), errors);
+
+        assertEquals(0, imported);
+        assertEquals(2, errors.size());
+        assertTrue(passportSerialIndex.find("ABC5").isEmpty());
+    }
+
+    private void assignIdsOnInsert() {
+        doAnswer(invocation -> {
+            List<Passport> passports = invocation.getArgument(0);
+            for (int i = 0; i < passports.size(); i++) {
+                passports.get(i).setId(i + 2L);
+            }
+            return null;
+        }).when(passportBatchRepository).insertAll(anyList());
+    }
+
+    private static PassportImportRow row(long line, String prefix, long from, long to) {
+        return new PassportImportRow(line, new PassportVO(null, "P" + line, "M" + line, prefix, 24, from, to));
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,121 @@
+package bg.tuvarna.devicebackend.uservices;
+
+import bg.tuvarna.devicebackend.indexes.PassportSerialIndex;
+import bg.tuvarna.devicebackend.models.dtos.PassportVO;
+import bg.tuvarna.devicebackend.models.entities.Passport;
+import bg.tuvarna.devicebackend.repositories.PassportBatchRepository;
+import bg.tuvarna.devicebackend.repositories.PassportRepository;
+import bg.tuvarna.devicebackend.services.PassportLookupCache;
+import bg.tuvarna.devicebackend.services.PassportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PassportLookupTests {
+
+    @Mock
+    private PassportRepository passportRepository;
+
+    @Mock
+    private PassportBatchRepository passportBatchRepository;
+
+    private PassportSerialIndex passportSerialIndex;
+    private PassportService passportService;
+
+    @BeforeEach
+    void setUp() {
+        passportSerialIndex = new PassportSerialIndex();
+        passportService = new PassportService(passportRepository, passportBatchRepository, passportSerialIndex,
+                new PassportLookupCache(Duration.ofMinutes(1), Duration.ofMinutes(1), 100));
+    }
+
+    @Test
+    void lookup_shouldNeverQueryDatabase_onMiss() {
+        assertTrue(passportService.lookupPassportBySerialId("XYZ1").isEmpty());
+        assertTrue(passportService.lookupPassportsBySerialIds(List.of("XYZ1", "XYZ2")).values().stream().allMatch(p -> p == null));
+
+        verifyNoInteractions(passportRepository);
+    }
+
+    @Test
+    void lookup_shouldCacheMiss_untilPassportSaved() {
+        assertTrue(passportService.lookupPassportBySerialId("ABC5").isEmpty());
+
+        // a passport added to the index behind the service's back stays hidden by the cached miss
+        passportSerialIndex.put(passport(100L, "ABC", 1, 9));
+        assertTrue(passportService.lookupPassportBySerialId("ABC5").isEmpty());
+
+        when(passportRepository.save(any(Passport.class))).thenAnswer(invocation -> {
+            Passport saved = invocation.getArgument(0);
+            saved.setId(101L);
+            passportSerialIndex.put(saved);
+            return saved;
+        });
+        passportService.save(new PassportVO(null, "Washer", "W1", "XYZ", 24, 1, 9));
+
+        assertEquals(100L, passportService.lookupPassportBySerialId("ABC5").orElseThrow().getId());
+        assertEquals(101L, passportService.lookupPassportBySerialId("XYZ5").orElseThrow().getId());
+    }
+
+    @Test
+    void lookup_shouldDropCachedHit_whenPassportDeleted() {
+        passportSerialIndex.put(passport(100L, "ABC", 1, 9));
+        assertTrue(passportService.lookupPassportBySerialId("ABC5").isPresent());
+
+        doAnswer(invocation -> {
+            passportSerialIndex.remove(100L);
+            return null;
+        }).when(passportRepository).deleteById(100L);
+        passportService.delete(100L);
+
+        assertTrue(passportService.lookupPassportBySerialId("ABC5").isEmpty());
+    }
+
+    @Test
+    void cache_shouldExpireMissesSooner_andStayBounded() {
+        PassportLookupCache cache = new PassportLookupCache(Duration.ofMinutes(1), Duration.ZERO, 2);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("ABC1", serialId -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        cache.get("ABC1", serialId -> {
+            loads.incrementAndGet();
+            return Optional.of(passport(1L, "ABC", 1, 9));
+        });
+        assertEquals(2, loads.get());
+
+        cache.get("ABC1", serialId -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        assertEquals(2, loads.get());
+
+        for (int i = 2; i < 10; i++) {
+            cache.get("ABC" + i, serialId -> Optional.of(passport(1L, "ABC", 1, 9)));
+        }
+        cache.get("ABC1", serialId -> {
+            loads.incrementAndGet();
+            return Optional.empty();
+        });
+        assertEquals(3, loads.get());
+    }
+
+    private static Passport passport(Long id, String prefix, long from, long to) {
+        return Passport.builder().id(id).name("P" + id).model("M" + id).serialPrefix(prefix)
+                .fromSerialNumber(from).toSerialNumber(to).warrantyMonths(24).build();
+    }
+}
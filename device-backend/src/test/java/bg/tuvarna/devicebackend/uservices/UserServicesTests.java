@@ -1,6 +1,7 @@
 package bg.tuvarna.devicebackend.uservices;
 
 
+import bg.tuvarna.devicebackend.config.PrincipalCache;
 import bg.tuvarna.devicebackend.controllers.execptions.CustomException;
 import bg.tuvarna.devicebackend.controllers.execptions.ErrorCode;
 import bg.tuvarna.devicebackend.models.dtos.ChangePasswordVO;
@@ -10,17 +11,26 @@ import bg.tuvarna.devicebackend.models.entities.User;
 import bg.tuvarna.devicebackend.models.enums.UserRole;
 import bg.tuvarna.devicebackend.repositories.UserRepository;
 import bg.tuvarna.devicebackend.services.DeviceService;
+import bg.tuvarna.devicebackend.services.ListingCounter;
+import bg.tuvarna.devicebackend.services.RefreshTokenService;
 import bg.tuvarna.devicebackend.services.UserService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -38,6 +48,18 @@ class UserServicesTests {
     @Mock
     private DeviceService deviceService;
 
+    @Mock
+    private PrincipalCache principalCache;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ListingCounter listingCounter;
+
     @InjectMocks
     private UserService userService;
 
@@ -54,51 +76,85 @@ class UserServicesTests {
                 LocalDate.of(2025, 1, 10),
                 "ABC100"
         );
+
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
     }
 
     @Test
     void register_shouldThrowAlreadyExists_whenEmailTaken() {
-        when(userRepository.getByEmail(validCreateVO.email())).thenReturn(new User());
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(uniqueViolation(User.EMAIL_CONSTRAINT));
 
         CustomException ex = assertThrows(CustomException.class, () -> userService.register(validCreateVO));
         assertEquals(ErrorCode.AlreadyExists, ex.getErrorCode());
+        assertEquals("Email already taken", ex.getMessage());
 
-        verify(userRepository, never()).save(any(User.class));
         verify(deviceService, never()).registerDevice(anyString(), any(), any());
     }
 
     @Test
     void register_shouldThrowAlreadyExists_whenPhoneTaken() {
-        when(userRepository.getByEmail(validCreateVO.email())).thenReturn(null);
-        when(userRepository.getByPhone(validCreateVO.phone())).thenReturn(new User());
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(uniqueViolation(User.PHONE_CONSTRAINT.toUpperCase()));
 
         CustomException ex = assertThrows(CustomException.class, () -> userService.register(validCreateVO));
         assertEquals(ErrorCode.AlreadyExists, ex.getErrorCode());
+        assertEquals("Phone already taken", ex.getMessage());
 
-        verify(userRepository, never()).save(any(User.class));
+        verify(deviceService, never()).registerDevice(anyString(), any(), any());
+    }
+
+    @Test
+    void register_shouldThrowAlreadyExists_whenDriverMessageNamesConstraint() {
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate",
+                new SQLException("duplicate key value violates unique constraint \"" + User.EMAIL_CONSTRAINT + "\"")));
+
+        CustomException ex = assertThrows(CustomException.class, () -> userService.register(validCreateVO));
+        assertEquals("Email already taken", ex.getMessage());
+    }
+
+    @Test
+    void register_shouldRethrow_whenOtherConstraintViolated() {
+        DataIntegrityViolationException notNull = new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", null, "users_full_name_not_null"));
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(notNull);
+
+        assertSame(notNull, assertThrows(DataIntegrityViolationException.class, () -> userService.register(validCreateVO)));
         verify(deviceService, never()).registerDevice(anyString(), any(), any());
     }
 
     @Test
     void register_shouldSaveUserAndRegisterDevice_whenValid() {
-        when(userRepository.getByEmail(validCreateVO.email())).thenReturn(null);
-        when(userRepository.getByPhone(validCreateVO.phone())).thenReturn(null);
         when(passwordEncoder.encode(validCreateVO.password())).thenReturn("ENC");
 
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> {
             User u = invocation.getArgument(0, User.class);
             u.setId(123L);
             return u;
         });
 
-        doNothing().when(deviceService).alreadyExist(validCreateVO.deviceSerialNumber());
         doNothing().when(deviceService).registerDevice(eq(validCreateVO.deviceSerialNumber()), eq(validCreateVO.purchaseDate()), any(User.class));
 
         assertDoesNotThrow(() -> userService.register(validCreateVO));
 
-        verify(userRepository, times(1)).save(any(User.class));
-        verify(deviceService, times(1)).alreadyExist(validCreateVO.deviceSerialNumber());
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        verify(userRepository, never()).delete(any(User.class));
         verify(deviceService, times(1)).registerDevice(eq(validCreateVO.deviceSerialNumber()), eq(validCreateVO.purchaseDate()), any(User.class));
+        verify(listingCounter).invalidate();
+    }
+
+    @Test
+    void register_shouldHashPassword_beforeTransactionStarts() {
+        when(passwordEncoder.encode(validCreateVO.password())).thenReturn("ENC");
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.register(validCreateVO);
+
+        InOrder inOrder = inOrder(passwordEncoder, transactionTemplate, userRepository);
+        inOrder.verify(passwordEncoder).encode(validCreateVO.password());
+        inOrder.verify(transactionTemplate).executeWithoutResult(any());
+        inOrder.verify(userRepository).saveAndFlush(argThat(u -> "ENC".equals(u.getPassword())));
     }
 
     @Test
@@ -133,4 +189,8 @@ class UserServicesTests {
 
         verify(userRepository, times(1)).save(argThat(saved -> "NEW_HASH".equals(saved.getPassword())));
     }
+
+    private static DataIntegrityViolationException uniqueViolation(String constraint) {
+        return new DataIntegrityViolationException("duplicate", new ConstraintViolationException("duplicate", null, constraint));
+    }
 }